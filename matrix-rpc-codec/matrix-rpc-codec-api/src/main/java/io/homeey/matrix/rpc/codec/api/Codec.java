@@ -3,6 +3,8 @@ package io.homeey.matrix.rpc.codec.api;
 import io.homeey.matrix.rpc.spi.Activate;
 import io.homeey.matrix.rpc.spi.SPI;
 
+import java.nio.ByteBuffer;
+
 /**
  *
  * @author jt4mrg@gmail.com
@@ -27,4 +29,22 @@ public interface Codec {
      * @return 解码后的对象
      */
     <T> T decode(byte[] bytes, Class<T> clazz);
+
+    /**
+     * 从 ByteBuffer 解码为指定类型的对象
+     * <p>
+     * 传输层直接传入网络缓冲区的只读视图，实现可以覆盖此方法避免复制；
+     * 默认实现复制剩余字节后委托给 {@link #decode(byte[], Class)}。
+     * 缓冲区仅在调用期间有效，实现不得持有其引用
+     *
+     * @param buffer 待解码的缓冲区（position 到 limit 之间的字节）
+     * @param clazz  目标对象类型
+     * @param <T>    目标对象类型泛型
+     * @return 解码后的对象
+     */
+    default <T> T decode(ByteBuffer buffer, Class<T> clazz) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return decode(bytes, clazz);
+    }
 }
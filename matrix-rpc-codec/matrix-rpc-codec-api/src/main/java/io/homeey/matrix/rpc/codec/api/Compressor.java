@@ -0,0 +1,51 @@
+package io.homeey.matrix.rpc.codec.api;
+
+import io.homeey.matrix.rpc.spi.SPI;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 负载压缩扩展点
+ * <p>
+ * 作用于序列化后的参数和返回值。扩展名同时写入帧头，接收端据此选择同名实现解压，
+ * 因此两端需要能加载到同一扩展。内置实现：
+ * <ul>
+ *   <li>deflate：JDK Deflater，压缩率高，CPU 开销较大</li>
+ *   <li>snappy：LZ 系快速压缩（matrix-rpc-transport-netty 提供），适合低延迟链路</li>
+ * </ul>
+ */
+@SPI("deflate")
+public interface Compressor {
+
+    /**
+     * 压缩数据
+     *
+     * @param data 原始字节
+     * @return 压缩后的字节
+     */
+    byte[] compress(byte[] data);
+
+    /**
+     * 解压数据，不限制解压后的大小
+     *
+     * @param data 压缩后的数据（position 到 limit 之间的字节）
+     * @return 解压后的原始字节
+     */
+    default byte[] decompress(ByteBuffer data) {
+        return decompress(data, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 解压数据
+     * <p>
+     * 传输层直接传入网络缓冲区的只读视图，缓冲区仅在调用期间有效。
+     * 数据来自对端，实现必须在分配结果数组前校验声明的原始长度，并在解压达到上限时停止，
+     * 避免少量字节触发超大分配或解压炸弹
+     *
+     * @param data      压缩后的数据（position 到 limit 之间的字节）
+     * @param maxLength 解压后允许的最大字节数
+     * @return 解压后的原始字节
+     * @throws IllegalArgumentException 数据损坏或解压后超过 maxLength
+     */
+    byte[] decompress(ByteBuffer data, int maxLength);
+}
@@ -0,0 +1,79 @@
+package io.homeey.matrix.rpc.codec.api;
+
+import io.homeey.matrix.rpc.spi.Activate;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 基于 JDK Deflater 的压缩实现（raw deflate，BEST_SPEED）
+ * <p>
+ * 输出格式：[int 原始长度][deflate 数据]，解压时校验原始长度不超过上限后据此一次性分配结果数组。
+ * Deflater / Inflater 按线程复用，避免每次调用分配本地内存
+ */
+@Activate
+public class DeflateCompressor implements Compressor {
+
+    private static final int LENGTH_PREFIX = 4;
+
+    private final ThreadLocal<Deflater> deflaterHolder =
+            ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED, true));
+    private final ThreadLocal<Inflater> inflaterHolder =
+            ThreadLocal.withInitial(() -> new Inflater(true));
+
+    @Override
+    public byte[] compress(byte[] data) {
+        Deflater deflater = deflaterHolder.get();
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+
+        byte[] out = new byte[LENGTH_PREFIX + data.length / 2 + 64];
+        ByteBuffer.wrap(out).putInt(data.length);
+        int length = LENGTH_PREFIX;
+        while (!deflater.finished()) {
+            if (length == out.length) {
+                out = Arrays.copyOf(out, out.length << 1);
+            }
+            length += deflater.deflate(out, length, out.length - length);
+        }
+        return Arrays.copyOf(out, length);
+    }
+
+    @Override
+    public byte[] decompress(ByteBuffer data, int maxLength) {
+        ByteBuffer input = data.duplicate();
+        int originalLength = input.getInt();
+        if (originalLength < 0) {
+            throw new IllegalArgumentException("Invalid deflate payload length: " + originalLength);
+        }
+        // 先校验再分配；结果数组即为上限，多出的数据不会被解压
+        if (originalLength > maxLength) {
+            throw new IllegalArgumentException("Deflate payload length " + originalLength + " exceeds limit " + maxLength);
+        }
+
+        Inflater inflater = inflaterHolder.get();
+        inflater.reset();
+        inflater.setInput(input);
+        byte[] out = new byte[originalLength];
+        try {
+            int length = 0;
+            while (length < originalLength && !inflater.finished()) {
+                int inflated = inflater.inflate(out, length, originalLength - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != originalLength) {
+                throw new IllegalArgumentException("Truncated deflate payload: " + length + "/" + originalLength);
+            }
+            return out;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupted deflate payload", e);
+        }
+    }
+}
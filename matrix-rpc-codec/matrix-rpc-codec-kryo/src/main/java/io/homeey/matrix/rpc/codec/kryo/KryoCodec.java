@@ -1,13 +1,14 @@
 package io.homeey.matrix.rpc.codec.kryo;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.ByteBufferInput;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import io.homeey.matrix.rpc.codec.api.Codec;
 import io.homeey.matrix.rpc.spi.Activate;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * 基于 Kryo 的序列化实现，用于支持复杂对象的高效序列化
@@ -27,6 +28,15 @@ public class KryoCodec implements Codec {
         return kryo;
     });
 
+    private static final int OUTPUT_BUFFER_SIZE = 4096;
+    private static final int MAX_RETAINED_OUTPUT_SIZE = 1024 * 1024;
+
+    /**
+     * 线程内复用的输出缓冲区，超过上限的缓冲区用完即丢弃，避免长期占用大块内存
+     */
+    private final ThreadLocal<Output> outputHolder =
+            ThreadLocal.withInitial(() -> new Output(OUTPUT_BUFFER_SIZE, -1));
+
     @Override
     public byte[] encode(Object object) {
         if (object == null) {
@@ -34,15 +44,17 @@ public class KryoCodec implements Codec {
         }
         
         Kryo kryo = kryoHolder.get();
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        Output output = new Output(byteArrayOutputStream);
-        
+        Output output = outputHolder.get();
+        output.reset();
+
         try {
             kryo.writeClassAndObject(output, object);
-            output.flush();
-            return byteArrayOutputStream.toByteArray();
+            // 只做一次精确大小的复制，不经过 ByteArrayOutputStream 的扩容和 toByteArray
+            return output.toBytes();
         } finally {
-            output.close();
+            if (output.getBuffer().length > MAX_RETAINED_OUTPUT_SIZE) {
+                outputHolder.remove();
+            }
         }
     }
 
@@ -63,4 +75,19 @@ public class KryoCodec implements Codec {
             input.close();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 直接从网络缓冲区读取，不复制为 byte[]
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T decode(ByteBuffer buffer, Class<T> clazz) {
+        if (buffer == null || !buffer.hasRemaining()) {
+            return null;
+        }
+
+        Kryo kryo = kryoHolder.get();
+        ByteBufferInput input = new ByteBufferInput(buffer.slice());
+        return (T) kryo.readClassAndObject(input);
+    }
+}
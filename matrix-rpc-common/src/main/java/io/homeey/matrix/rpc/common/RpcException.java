@@ -10,14 +10,58 @@ import java.io.Serializable;
 public class RpcException extends RuntimeException implements Serializable {
     private static final long serialVersionUID = -2919193633372849261L;
 
+    /**
+     * 未分类错误
+     */
+    public static final int UNKNOWN = 0;
+    /**
+     * 服务端业务线程池饱和，请求在执行前被快速拒绝（可重试）
+     */
+    public static final int SERVER_OVERLOADED = 1;
+    /**
+     * 服务/方法级隔离执行器饱和，请求在执行前被拒绝（可重试）
+     */
+    public static final int BULKHEAD_REJECTED = 2;
+    /**
+     * 消费端连接过载（在途请求数或写缓冲达到上限），请求未发出（可重试）
+     */
+    public static final int CLIENT_OVERLOADED = 3;
+
+    /**
+     * 错误码，随响应传回消费端
+     */
+    private final int code;
+
     public RpcException() {
+        this.code = UNKNOWN;
     }
 
     public RpcException(String message) {
-        super(message);
+        this(UNKNOWN, message);
     }
 
     public RpcException(String message, Throwable cause) {
+        this(UNKNOWN, message, cause);
+    }
+
+    public RpcException(int code, String message) {
+        super(message);
+        this.code = code;
+    }
+
+    public RpcException(int code, String message, Throwable cause) {
         super(message, cause);
+        this.code = code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * 请求是否在执行业务逻辑之前就被拒绝，此类错误可以安全地重试到其他节点
+     */
+    public boolean isRetryable() {
+        return code == SERVER_OVERLOADED || code == BULKHEAD_REJECTED || code == CLIENT_OVERLOADED;
     }
 }
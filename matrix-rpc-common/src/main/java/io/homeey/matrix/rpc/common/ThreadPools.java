@@ -0,0 +1,136 @@
+package io.homeey.matrix.rpc.common;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 有界业务线程池工厂
+ * <p>
+ * 所有线程池都是有界的，饱和时 {@code execute} 直接抛出 {@link RejectedExecutionException}，
+ * 由调用方转换为快速失败的响应，而不是无限排队：
+ * <ul>
+ *   <li>fixed：固定线程数 + 有界队列（queues=0 时不排队，线程用满即拒绝）</li>
+ *   <li>virtual：每个请求一个虚拟线程，以 threads 作为并发上限，不排队</li>
+ * </ul>
+ * 配置示例：
+ * <pre>
+ * matrix://0.0.0.0:20880/EchoService?threadpool=fixed&amp;threads=200&amp;queues=1024
+ * matrix://0.0.0.0:20880/EchoService?threadpool=virtual&amp;threads=10000
+ * </pre>
+ */
+public final class ThreadPools {
+
+    public static final String THREADPOOL_KEY = "threadpool";
+    public static final String THREADS_KEY = "threads";
+    public static final String QUEUES_KEY = "queues";
+
+    public static final String FIXED = "fixed";
+    public static final String VIRTUAL = "virtual";
+
+    public static final int DEFAULT_THREADS = 200;
+    public static final int DEFAULT_QUEUES = 0;
+    public static final int DEFAULT_VIRTUAL_THREADS = 10000;
+
+    private ThreadPools() {
+    }
+
+    /**
+     * 按 URL 参数创建线程池
+     *
+     * @param name 线程名前缀
+     * @param url  包含 threadpool / threads / queues 参数的 URL
+     */
+    public static ExecutorService newExecutor(String name, URL url) {
+        String type = url.getParameter(THREADPOOL_KEY, FIXED);
+        int defaultThreads = VIRTUAL.equalsIgnoreCase(type) ? DEFAULT_VIRTUAL_THREADS : DEFAULT_THREADS;
+        return newExecutor(name, type,
+                url.getParameter(THREADS_KEY, defaultThreads),
+                url.getParameter(QUEUES_KEY, DEFAULT_QUEUES));
+    }
+
+    public static ExecutorService newExecutor(String name, String type, int threads, int queues) {
+        int limit = Math.max(1, threads);
+        if (VIRTUAL.equalsIgnoreCase(type)) {
+            return new LimitedExecutor(
+                    Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory()),
+                    limit);
+        }
+        if (!FIXED.equalsIgnoreCase(type)) {
+            System.err.println("[Matrix RPC] Unknown threadpool '" + type + "', fallback to fixed");
+        }
+        BlockingQueue<Runnable> queue = queues <= 0 ? new SynchronousQueue<>() : new ArrayBlockingQueue<>(queues);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(limit, limit, 60, TimeUnit.SECONDS, queue,
+                Thread.ofPlatform().name(name + "-", 0).daemon(true).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * 以信号量限制并发的执行器，许可用尽时直接拒绝
+     */
+    private static final class LimitedExecutor extends AbstractExecutorService {
+        private final ExecutorService delegate;
+        private final Semaphore permits;
+        private final int limit;
+
+        LimitedExecutor(ExecutorService delegate, int limit) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(limit);
+            this.limit = limit;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (!permits.tryAcquire()) {
+                throw new RejectedExecutionException("Concurrency limit reached: " + limit);
+            }
+            try {
+                delegate.execute(() -> {
+                    try {
+                        command.run();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
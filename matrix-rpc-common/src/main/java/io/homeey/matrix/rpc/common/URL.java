@@ -120,6 +120,10 @@ public class URL implements Serializable {
         return value != null ? Integer.parseInt(value) : defaultValue;
     }
 
+    public Map<String, String> getParameters() {
+        return Collections.unmodifiableMap(parameters);
+    }
+
     public URL addParameter(String key, String value) {
         Map<String, String> newParams = new HashMap<>(parameters);
         newParams.put(key, value);
@@ -1,8 +1,43 @@
 package io.homeey.matrix.rpc.core;
 
 import io.homeey.matrix.rpc.common.Result;
+import io.homeey.matrix.rpc.common.RpcException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
 
 public interface Invoker<T> {
     Class<T> getInterface();
     Result invoke(Invocation invocation);
-}
\ No newline at end of file
+
+    /**
+     * 异步调用
+     * <p>
+     * 默认实现基于同步 {@link #invoke(Invocation)}，远程调用等真正异步的 Invoker 应覆盖此方法，
+     * 使调用线程在请求处理期间不被占用
+     *
+     * @param invocation 调用信息
+     * @return 调用结果的 CompletionStage
+     */
+    default CompletionStage<Result> invokeAsync(Invocation invocation) {
+        try {
+            return CompletableFuture.completedFuture(invoke(invocation));
+        } catch (Throwable t) {
+            return CompletableFuture.failedFuture(t);
+        }
+    }
+
+    /**
+     * 流式调用
+     * <p>
+     * 用于返回 {@link Flow.Publisher} 的方法，元素按订阅者的请求量从提供者逐批拉取。
+     * 默认不支持，远程调用的 Invoker 应覆盖此方法
+     *
+     * @param invocation 调用信息
+     * @return 结果元素的 Publisher
+     */
+    default Flow.Publisher<Object> invokeStream(Invocation invocation) {
+        throw new RpcException("Streaming is not supported by invoker: " + getClass().getName());
+    }
+}
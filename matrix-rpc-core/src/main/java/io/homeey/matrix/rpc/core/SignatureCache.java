@@ -0,0 +1,84 @@
+package io.homeey.matrix.rpc.core;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 方法签名缓存：参数类型名列表到共享 {@code Class<?>[]} 的解析结果
+ * <p>
+ * 以类型名列表整体为键，每种签名只加载一次类，稳定运行后解码请求不再触发类加载。
+ * 类由构造时指定的 ClassLoader 加载，不同 ClassLoader 应使用各自的缓存实例（如每个服务端一个），
+ * 避免同名类在不同加载器之间串用。解析失败的签名不缓存，下次仍会重试
+ */
+public final class SignatureCache {
+
+    private static final Map<String, Class<?>> PRIMITIVES = Map.of(
+            "int", int.class, "long", long.class, "boolean", boolean.class, "double", double.class,
+            "float", float.class, "byte", byte.class, "short", short.class, "char", char.class,
+            "void", void.class);
+
+    private final ClassLoader classLoader;
+    private final Map<List<String>, Signature> byNames = new ConcurrentHashMap<>();
+
+    public SignatureCache(ClassLoader classLoader) {
+        this.classLoader = classLoader != null ? classLoader : SignatureCache.class.getClassLoader();
+    }
+
+    /**
+     * 使用当前线程上下文 ClassLoader 的缓存，通常在导出服务的线程中创建
+     */
+    public static SignatureCache forContextClassLoader() {
+        return new SignatureCache(Thread.currentThread().getContextClassLoader());
+    }
+
+    /**
+     * 按参数类型名解析签名；传入的列表只用于查找，不会被缓存持有
+     *
+     * @throws IllegalArgumentException 某个类型无法加载
+     */
+    public Signature resolve(List<String> typeNames) {
+        Signature signature = byNames.get(typeNames);
+        if (signature != null) {
+            return signature;
+        }
+        Class<?>[] parameterTypes = new Class<?>[typeNames.size()];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            parameterTypes[i] = loadClass(typeNames.get(i));
+        }
+        signature = new Signature(parameterTypes);
+        Signature existing = byNames.putIfAbsent(List.copyOf(typeNames), signature);
+        return existing != null ? existing : signature;
+    }
+
+    private Class<?> loadClass(String className) {
+        Class<?> primitive = PRIMITIVES.get(className);
+        if (primitive != null) {
+            return primitive;
+        }
+        try {
+            return Class.forName(className, false, classLoader);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Failed to load class: " + className, e);
+        }
+    }
+
+    /**
+     * 一种参数签名
+     */
+    public static final class Signature {
+
+        private final Class<?>[] parameterTypes;
+
+        private Signature(Class<?>[] parameterTypes) {
+            this.parameterTypes = parameterTypes;
+        }
+
+        /**
+         * 共享的参数类型数组，调用方不得修改
+         */
+        public Class<?>[] parameterTypes() {
+            return parameterTypes;
+        }
+    }
+}
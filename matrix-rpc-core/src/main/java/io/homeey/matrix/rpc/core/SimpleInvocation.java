@@ -11,6 +11,8 @@ public class SimpleInvocation implements Invocation {
     private final Class<?>[] parameterTypes;
     private final Object[] arguments;
     private final Map<String, String> attachments;
+    // 为 false 时访问数组不复制，见 decoded(...)
+    private final boolean copyOnRead;
     
     public SimpleInvocation(String serviceName, String methodName,
                             Class<?>[] parameterTypes, Object[] arguments) {
@@ -20,16 +22,36 @@ public class SimpleInvocation implements Invocation {
     public SimpleInvocation(String serviceName, String methodName,
                             Class<?>[] parameterTypes, Object[] arguments,
                             Map<String, String> attachments) {
+        this(serviceName, methodName, parameterTypes, arguments,
+                attachments != null ? Collections.unmodifiableMap(attachments) : Collections.emptyMap(), true);
+    }
+
+    private SimpleInvocation(String serviceName, String methodName,
+                             Class<?>[] parameterTypes, Object[] arguments,
+                             Map<String, String> attachments, boolean copyOnRead) {
         this.serviceName = Objects.requireNonNull(serviceName, "Service name cannot be null");
         this.methodName = Objects.requireNonNull(methodName, "Method name cannot be null");
         this.parameterTypes = Objects.requireNonNull(parameterTypes, "Parameter types cannot be null");
         this.arguments = Objects.requireNonNull(arguments, "Arguments cannot be null");
-        this.attachments = attachments != null ? Collections.unmodifiableMap(attachments) : Collections.emptyMap();
+        this.attachments = attachments;
+        this.copyOnRead = copyOnRead;
         
         if (parameterTypes.length != arguments.length) {
             throw new IllegalArgumentException("Parameter types length must match arguments length");
         }
     }
+
+    /**
+     * 传输层解码请求得到的调用，热路径上访问参数不再复制数组
+     * <p>
+     * parameterTypes 通常是签名缓存中共享的数组，arguments 由本次调用独占，
+     * attachments 须已是只读 Map；{@link #parameterTypes()} 与 {@link #arguments()} 直接返回原数组，调用方不得修改
+     */
+    public static SimpleInvocation decoded(String serviceName, String methodName,
+                                           Class<?>[] parameterTypes, Object[] arguments,
+                                           Map<String, String> attachments) {
+        return new SimpleInvocation(serviceName, methodName, parameterTypes, arguments, attachments, false);
+    }
     
     @Override
     public String getServiceName() {
@@ -43,12 +65,12 @@ public class SimpleInvocation implements Invocation {
     
     @Override
     public Class<?>[] parameterTypes() {
-        return parameterTypes.clone();
+        return copyOnRead ? parameterTypes.clone() : parameterTypes;
     }
     
     @Override
     public Object[] arguments() {
-        return arguments.clone();
+        return copyOnRead ? arguments.clone() : arguments;
     }
     
     @Override
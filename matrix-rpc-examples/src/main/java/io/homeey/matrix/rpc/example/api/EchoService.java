@@ -1,5 +1,8 @@
 package io.homeey.matrix.rpc.example.api;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
 public interface EchoService {
     String echo(String msg);
     
@@ -12,4 +15,19 @@ public interface EchoService {
      * 测试复杂对象作为参数和返回值
      */
     User saveUser(User user);
+
+    /**
+     * 测试异步调用：消费端直接拿到 Future，提供端在 Future 完成后才写回响应
+     */
+    CompletableFuture<String> echoAsync(String msg);
+
+    /**
+     * 测试服务端流：消费端按自己的处理速度请求，提供端只在收到 credit 后才生产
+     */
+    Flow.Publisher<User> listUsers(int count);
+
+    /**
+     * 测试双向流：逐条回显上行消息
+     */
+    Flow.Publisher<String> echoStream(Flow.Publisher<String> messages);
 }
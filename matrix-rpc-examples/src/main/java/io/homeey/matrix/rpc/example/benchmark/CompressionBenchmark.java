@@ -0,0 +1,76 @@
+package io.homeey.matrix.rpc.example.benchmark;
+
+import io.homeey.matrix.rpc.codec.api.Codec;
+import io.homeey.matrix.rpc.codec.api.Compressor;
+import io.homeey.matrix.rpc.example.api.User;
+import io.homeey.matrix.rpc.spi.ExtensionLoader;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 压缩算法的 CPU 开销与节省字节数对比
+ * <p>
+ * 负载为 Kryo 序列化后的 User 列表（与真实调用的参数 / 返回值一致），
+ * 对每种 Compressor 统计压缩率、压缩与解压的单次耗时。
+ * <p>
+ * 运行参数（系统属性）：
+ * <pre>
+ * -Dbench.compressors=deflate,snappy
+ * -Dbench.sizes=1,10,100,1000      # 每个负载包含的 User 数
+ * -Dbench.iterations=2000
+ * </pre>
+ */
+public class CompressionBenchmark {
+
+    public static void main(String[] args) {
+        String[] compressors = System.getProperty("bench.compressors", "deflate,snappy").split(",");
+        String[] sizes = System.getProperty("bench.sizes", "1,10,100,1000").split(",");
+        int iterations = Integer.getInteger("bench.iterations", 2000);
+
+        Codec codec = ExtensionLoader.getExtensionLoader(Codec.class).getExtension("kryo");
+        System.out.printf("%-10s %8s %10s %10s %8s %12s %12s%n",
+                "compressor", "users", "raw(B)", "zip(B)", "ratio", "comp(us)", "decomp(us)");
+        for (String size : sizes) {
+            byte[] payload = codec.encode(users(Integer.parseInt(size.trim())));
+            for (String name : compressors) {
+                Compressor compressor = ExtensionLoader.getExtensionLoader(Compressor.class).getExtension(name.trim());
+                run(name.trim(), Integer.parseInt(size.trim()), compressor, payload, iterations);
+            }
+        }
+    }
+
+    private static void run(String name, int users, Compressor compressor, byte[] payload, int iterations) {
+        byte[] compressed = compressor.compress(payload);
+        // 预热
+        for (int i = 0; i < iterations; i++) {
+            compressor.decompress(ByteBuffer.wrap(compressor.compress(payload)));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            compressed = compressor.compress(payload);
+        }
+        long compressNanos = (System.nanoTime() - start) / iterations;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            compressor.decompress(ByteBuffer.wrap(compressed));
+        }
+        long decompressNanos = (System.nanoTime() - start) / iterations;
+
+        System.out.printf("%-10s %8d %10d %10d %7.1f%% %12.1f %12.1f%n",
+                name, users, payload.length, compressed.length,
+                compressed.length * 100.0 / payload.length,
+                compressNanos / 1000.0, decompressNanos / 1000.0);
+    }
+
+    private static List<User> users(int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            users.add(new User((long) i, "user-" + i, "user" + i + "@example.com", 20 + i % 50));
+        }
+        return users;
+    }
+}
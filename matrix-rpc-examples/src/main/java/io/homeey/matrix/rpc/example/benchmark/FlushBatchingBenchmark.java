@@ -0,0 +1,99 @@
+package io.homeey.matrix.rpc.example.benchmark;
+
+import io.homeey.matrix.rpc.common.URL;
+import io.homeey.matrix.rpc.core.Invocation;
+import io.homeey.matrix.rpc.core.SimpleInvocation;
+import io.homeey.matrix.rpc.example.api.EchoService;
+import io.homeey.matrix.rpc.example.provider.EchoServiceImpl;
+import io.homeey.matrix.rpc.runtime.RpcService;
+import io.homeey.matrix.rpc.transport.netty.FlushBatchingHandler;
+import io.homeey.matrix.rpc.transport.netty.client.NettyTransportClient;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * flush 合并前后的吞吐与尾延迟对比
+ * <p>
+ * 在同一进程内启动提供端，由多个调用线程并发发起同步调用，分别在不开启 / 开启
+ * flush 合并（客户端与服务端同时开启）时测量吞吐和 p99。
+ * <p>
+ * 运行参数（系统属性）：
+ * <pre>
+ * -Dbench.threads=64        # 调用线程数
+ * -Dbench.seconds=10        # 每轮测量时长
+ * -Dbench.flush.batch=64    # transport.flush.batch
+ * -Dbench.flush.delay=0     # transport.flush.delay（微秒）
+ * -Dbench.port=20990
+ * </pre>
+ */
+public class FlushBatchingBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int threads = Integer.getInteger("bench.threads", 64);
+        int seconds = Integer.getInteger("bench.seconds", 10);
+        int batch = Integer.getInteger("bench.flush.batch", 64);
+        int delay = Integer.getInteger("bench.flush.delay", 0);
+        int port = Integer.getInteger("bench.port", 20990);
+
+        Map<String, String> batching = new HashMap<>();
+        batching.put(FlushBatchingHandler.BATCH_KEY, String.valueOf(batch));
+        batching.put(FlushBatchingHandler.DELAY_KEY, String.valueOf(delay));
+
+        System.out.println("threads=" + threads + ", seconds=" + seconds);
+        run("flush per message", new HashMap<>(), threads, seconds, port);
+        run("batch=" + batch + ", delay=" + delay + "us", batching, threads, seconds, port + 1);
+        System.exit(0);
+    }
+
+    private static void run(String name, Map<String, String> params, int threads, int seconds, int port)
+            throws Exception {
+        RpcService<EchoService> service = RpcService.create(EchoService.class, new EchoServiceImpl()).port(port);
+        params.forEach(service::parameter);
+        service.export();
+
+        NettyTransportClient client = new NettyTransportClient(
+                new URL("matrix", "localhost", port, EchoService.class.getName(), params));
+        client.connect();
+        try {
+            Invocation invocation = new SimpleInvocation(EchoService.class.getName(), "echo",
+                    new Class<?>[]{String.class}, new Object[]{"hello"});
+            // 预热
+            measure(client, invocation, threads, Math.max(1, seconds / 5));
+            LatencyRecorder[] recorders = new LatencyRecorder[threads];
+            long elapsed = measure(client, invocation, threads, seconds, recorders);
+            LatencyRecorder.report(name, recorders, elapsed);
+        } finally {
+            client.close();
+            service.close();
+        }
+    }
+
+    private static long measure(NettyTransportClient client, Invocation invocation, int threads, int seconds)
+            throws InterruptedException {
+        return measure(client, invocation, threads, seconds, new LatencyRecorder[threads]);
+    }
+
+    private static long measure(NettyTransportClient client, Invocation invocation, int threads, int seconds,
+                                LatencyRecorder[] recorders) throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + seconds * 1_000_000_000L;
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            LatencyRecorder recorder = new LatencyRecorder();
+            recorders[i] = recorder;
+            workers[i] = new Thread(() -> {
+                while (System.nanoTime() < deadline) {
+                    long begin = System.nanoTime();
+                    client.send(invocation, 3000);
+                    recorder.record(System.nanoTime() - begin);
+                }
+            }, "bench-" + i);
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,81 @@
+package io.homeey.matrix.rpc.example.benchmark;
+
+import io.homeey.matrix.rpc.core.Invocation;
+import io.homeey.matrix.rpc.core.Invoker;
+import io.homeey.matrix.rpc.core.SimpleInvocation;
+import io.homeey.matrix.rpc.example.api.EchoService;
+import io.homeey.matrix.rpc.example.provider.EchoServiceImpl;
+import io.homeey.matrix.rpc.runtime.support.MethodHandleInvoker;
+
+import java.lang.reflect.Method;
+
+/**
+ * 提供者调用路径对比：逐次反射（getMethod + Method.invoke）与导出时绑定的 MethodHandle
+ * <p>
+ * 不经过网络和序列化，只测量从 Invocation 到服务实现的分派开销。
+ * 每轮先预热再测量，交替运行多轮以抵消 JIT 时机带来的偏差。
+ * <p>
+ * 运行参数（系统属性）：
+ * <pre>
+ * -Dbench.rounds=5
+ * -Dbench.seconds=3         # 每轮每种实现的测量时长
+ * </pre>
+ */
+public class InvokerBenchmark {
+
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws Throwable {
+        int rounds = Integer.getInteger("bench.rounds", 5);
+        int seconds = Integer.getInteger("bench.seconds", 3);
+
+        EchoService target = new EchoServiceImpl();
+        Invoker<EchoService> methodHandle = new MethodHandleInvoker<>(EchoService.class, target);
+        Invocation invocation = new SimpleInvocation(EchoService.class.getName(), "echo",
+                new Class<?>[]{String.class}, new Object[]{"hello"});
+
+        for (int round = 1; round <= rounds; round++) {
+            System.out.println("round " + round);
+            report("reflection", seconds, () -> reflect(target, invocation));
+            report("method handle", seconds, () -> methodHandle.invoke(invocation).getValue());
+        }
+    }
+
+    /**
+     * 优化前 RpcService 的调用方式
+     */
+    private static Object reflect(Object target, Invocation invocation) throws Exception {
+        Method method = target.getClass().getMethod(invocation.methodName(), invocation.parameterTypes());
+        return method.invoke(target, invocation.arguments());
+    }
+
+    private static void report(String name, int seconds, Call call) throws Throwable {
+        // 预热
+        measure(call, Math.max(1, seconds / 3));
+        long start = System.nanoTime();
+        long operations = measure(call, seconds);
+        double elapsed = (System.nanoTime() - start) / 1_000_000_000.0;
+        System.out.printf("  %-14s %,14.0f ops/s  %8.1f ns/op%n",
+                name, operations / elapsed, elapsed * 1_000_000_000.0 / operations);
+    }
+
+    private static long measure(Call call, int seconds) throws Throwable {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long operations = 0;
+        Object last = null;
+        while (System.nanoTime() < deadline) {
+            // 每批调用之间才读一次时钟，避免 nanoTime 本身主导耗时
+            for (int i = 0; i < 1024; i++) {
+                last = call.run();
+            }
+            operations += 1024;
+        }
+        sink = last;
+        return operations;
+    }
+
+    @FunctionalInterface
+    private interface Call {
+        Object run() throws Throwable;
+    }
+}
@@ -0,0 +1,55 @@
+package io.homeey.matrix.rpc.example.benchmark;
+
+import java.util.Arrays;
+
+/**
+ * 单线程延迟记录器，压测结束后合并统计吞吐和分位数
+ */
+public class LatencyRecorder {
+
+    private long[] samples = new long[1 << 16];
+    private int count;
+
+    public void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count << 1);
+        }
+        samples[count++] = nanos;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    /**
+     * 合并多个线程的记录并打印吞吐、p50、p99、p999（微秒）
+     */
+    public static void report(String name, LatencyRecorder[] recorders, long elapsedNanos) {
+        int total = 0;
+        for (LatencyRecorder recorder : recorders) {
+            total += recorder.count;
+        }
+        long[] all = new long[total];
+        int offset = 0;
+        for (LatencyRecorder recorder : recorders) {
+            System.arraycopy(recorder.samples, 0, all, offset, recorder.count);
+            offset += recorder.count;
+        }
+        Arrays.sort(all);
+
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        System.out.printf("%-32s ops=%-9d throughput=%10.0f ops/s  p50=%8.1fus  p99=%8.1fus  p999=%8.1fus%n",
+                name, total, total / seconds,
+                percentile(all, 0.50) / 1000.0,
+                percentile(all, 0.99) / 1000.0,
+                percentile(all, 0.999) / 1000.0);
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,83 @@
+package io.homeey.matrix.rpc.example.benchmark;
+
+import io.homeey.matrix.rpc.common.URL;
+import io.homeey.matrix.rpc.core.Invocation;
+import io.homeey.matrix.rpc.core.SimpleInvocation;
+import io.homeey.matrix.rpc.example.api.EchoService;
+import io.homeey.matrix.rpc.example.provider.EchoServiceImpl;
+import io.homeey.matrix.rpc.runtime.MatrixProtocol;
+import io.homeey.matrix.rpc.runtime.RpcService;
+import io.homeey.matrix.rpc.transport.api.TransportClient;
+import io.homeey.matrix.rpc.transport.netty.client.NettyTransportClient;
+import io.homeey.matrix.rpc.transport.shm.ShmOptions;
+import io.homeey.matrix.rpc.transport.shm.ShmTransportClient;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 共享内存传输与 Netty 本机回环的延迟对比
+ * <p>
+ * 在同一进程内分别以 netty、shm 传输导出提供端，单个调用线程串行发起同步调用，
+ * 测量每次往返的 p50 / p99 / p999。共享内存的收发线程在空闲时会先忙等，建议在多核机器上运行。
+ * <p>
+ * 运行参数（系统属性）：
+ * <pre>
+ * -Dbench.seconds=10        # 每轮测量时长
+ * -Dbench.payload=64        # 请求字符串长度
+ * -Dbench.port=21090
+ * </pre>
+ */
+public class ShmLatencyBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int seconds = Integer.getInteger("bench.seconds", 10);
+        int payload = Integer.getInteger("bench.payload", 64);
+        int port = Integer.getInteger("bench.port", 21090);
+
+        String message = "x".repeat(payload);
+        System.out.println("seconds=" + seconds + ", payload=" + payload);
+        run("netty loopback", "netty", message, seconds, port);
+        run("shm ring", ShmOptions.NAME, message, seconds, port + 1);
+        System.exit(0);
+    }
+
+    private static void run(String name, String transport, String message, int seconds, int port)
+            throws Exception {
+        RpcService<EchoService> service = RpcService.create(EchoService.class, new EchoServiceImpl())
+                .port(port)
+                .transport(transport)
+                .export();
+
+        Map<String, String> params = new HashMap<>();
+        params.put(MatrixProtocol.TRANSPORT_KEY, transport);
+        URL url = new URL("matrix", "localhost", port, EchoService.class.getName(), params);
+        TransportClient client = ShmOptions.NAME.equals(transport)
+                ? new ShmTransportClient(url) : new NettyTransportClient(url);
+        client.connect();
+        try {
+            Invocation invocation = new SimpleInvocation(EchoService.class.getName(), "echo",
+                    new Class<?>[]{String.class}, new Object[]{message});
+            // 预热
+            measure(client, invocation, Math.max(1, seconds / 5), new LatencyRecorder());
+            LatencyRecorder recorder = new LatencyRecorder();
+            long elapsed = measure(client, invocation, seconds, recorder);
+            LatencyRecorder.report(name, new LatencyRecorder[]{recorder}, elapsed);
+        } finally {
+            client.close();
+            service.close();
+        }
+    }
+
+    private static long measure(TransportClient client, Invocation invocation, int seconds,
+                                LatencyRecorder recorder) {
+        long start = System.nanoTime();
+        long deadline = start + seconds * 1_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            long begin = System.nanoTime();
+            client.send(invocation, 3000);
+            recorder.record(System.nanoTime() - begin);
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -1,17 +1,28 @@
 package io.homeey.matrix.rpc.example.consumer;
 
+import io.homeey.matrix.rpc.common.Result;
 import io.homeey.matrix.rpc.example.api.EchoService;
 import io.homeey.matrix.rpc.example.api.User;
 import io.homeey.matrix.rpc.runtime.RpcReference;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
 public class ConsumerMain {
     public static void main(String[] args) {
         System.out.println("========================================");
         System.out.println("Matrix RPC Consumer - Complex Object Support");
         System.out.println("========================================");
         
-        // 一行代码获取远程服务代理！
-        EchoService echoService = RpcReference.refer(EchoService.class, "localhost", 20880);
+        // 获取远程服务代理
+        RpcReference<EchoService> reference = RpcReference.create(EchoService.class)
+                .address("localhost", 20880);
+        EchoService echoService = reference.get();
         
         // 1. 测试字符串传递
         System.out.println("\n--- Test 1: String Parameter ---");
@@ -29,9 +40,84 @@ public class ConsumerMain {
         System.out.println("Input User: " + newUser);
         User savedUser = echoService.saveUser(newUser);
         System.out.println("Saved User: " + savedUser);
+
+        // 4. 测试异步调用
+        System.out.println("\n--- Test 4: CompletableFuture Return ---");
+        CompletableFuture<String> future = echoService.echoAsync("Hello Async!");
+        System.out.println("Async Result: " + future.join());
+
+        // 5. 测试批量调用
+        System.out.println("\n--- Test 5: Batch Invocation ---");
+        List<Result> results = reference.batch()
+                .add(s -> s.echo("batch-1"))
+                .add(s -> s.echo("batch-2"))
+                .add(s -> s.getUser(456L))
+                .execute();
+        for (Result batchResult : results) {
+            System.out.println("Batch Result: " + batchResult.getValue());
+        }
+
+        // 6. 测试服务端流：每处理完 100 个再请求下一批，两端缓冲都不超过 100 个元素
+        System.out.println("\n--- Test 6: Server Streaming ---");
+        AtomicLong received = new AtomicLong();
+        awaitStream(echoService.listUsers(10_000), 100, item -> received.incrementAndGet());
+        System.out.println("Streamed Users: " + received.get());
+
+        // 7. 测试双向流
+        System.out.println("\n--- Test 7: Bidirectional Streaming ---");
+        SubmissionPublisher<String> messages = new SubmissionPublisher<>();
+        Thread.ofVirtual().start(() -> {
+            for (int i = 1; i <= 3; i++) {
+                messages.submit("stream-" + i);
+            }
+            messages.close();
+        });
+        awaitStream(echoService.echoStream(messages), 16, item -> System.out.println("Stream Result: " + item));
         
         System.out.println("\n========================================");
         System.out.println("All RPC calls completed successfully!");
         System.out.println("========================================");
     }
-}
\ No newline at end of file
+
+    /**
+     * 订阅流并等待结束，每消费 batch 个元素再请求下一批
+     */
+    private static <T> void awaitStream(Flow.Publisher<T> publisher, int batch, Consumer<T> consumer) {
+        CountDownLatch done = new CountDownLatch(1);
+        publisher.subscribe(new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+            private int consumed;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(batch);
+            }
+
+            @Override
+            public void onNext(T item) {
+                consumer.accept(item);
+                if (++consumed == batch) {
+                    consumed = 0;
+                    subscription.request(batch);
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                System.err.println("Stream failed: " + throwable.getMessage());
+                done.countDown();
+            }
+
+            @Override
+            public void onComplete() {
+                done.countDown();
+            }
+        });
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
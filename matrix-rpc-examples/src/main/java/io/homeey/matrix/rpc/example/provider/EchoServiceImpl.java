@@ -3,6 +3,10 @@ package io.homeey.matrix.rpc.example.provider;
 import io.homeey.matrix.rpc.example.api.EchoService;
 import io.homeey.matrix.rpc.example.api.User;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+
 public class EchoServiceImpl implements EchoService {
 
     @Override
@@ -25,4 +29,68 @@ public class EchoServiceImpl implements EchoService {
         System.out.println("[Provider] Saved user: " + user);
         return user;
     }
+
+    @Override
+    public CompletableFuture<String> echoAsync(String msg) {
+        // 模拟慢速 IO，结果在其他线程完成
+        return CompletableFuture.supplyAsync(() -> "async echo: " + msg);
+    }
+
+    @Override
+    public Flow.Publisher<User> listUsers(int count) {
+        // SubmissionPublisher 按订阅者的请求量推送，缓冲区满时 submit 阻塞，生产速度跟随消费端；
+        // 没有订阅者时 submit 的元素会被直接丢弃，因此订阅者挂上之后才开始生产
+        return subscriber -> {
+            SubmissionPublisher<User> publisher = new SubmissionPublisher<>();
+            publisher.subscribe(subscriber);
+            Thread.ofVirtual().start(() -> {
+                try {
+                    for (long id = 1; id <= count; id++) {
+                        publisher.submit(getUser(id));
+                    }
+                    publisher.close();
+                } catch (Exception e) {
+                    publisher.closeExceptionally(e);
+                }
+            });
+        };
+    }
+
+    @Override
+    public Flow.Publisher<String> echoStream(Flow.Publisher<String> messages) {
+        // 同 listUsers：订阅者挂上之后再订阅输入流，避免回显结果在无人订阅时被丢弃
+        return subscriber -> {
+            SubmissionPublisher<String> publisher = new SubmissionPublisher<>();
+            publisher.subscribe(subscriber);
+            messages.subscribe(echoing(publisher));
+        };
+    }
+
+    private Flow.Subscriber<String> echoing(SubmissionPublisher<String> publisher) {
+        return new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(16);
+            }
+
+            @Override
+            public void onNext(String item) {
+                publisher.submit(echo(item));
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                publisher.closeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                publisher.close();
+            }
+        };
+    }
 }
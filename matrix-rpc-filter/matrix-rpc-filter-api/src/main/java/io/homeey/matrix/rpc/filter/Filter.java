@@ -5,6 +5,8 @@ import io.homeey.matrix.rpc.core.Invocation;
 import io.homeey.matrix.rpc.core.Invoker;
 import io.homeey.matrix.rpc.spi.SPI;
 
+import java.util.concurrent.CompletionStage;
+
 /**
  *
  * @author jt4mrg@gmail.com
@@ -20,4 +22,40 @@ public interface Filter {
      * @return 调用结果
      */
     Result invoke(Invoker<?> invoker, Invocation invocation);
+
+    /**
+     * 异步过滤器，默认直接透传给下一个 Invoker
+     * <p>
+     * 需要在调用完成后处理结果的过滤器应优先实现 {@link #onResponse} / {@link #onError}，
+     * 而不是阻塞等待返回的 CompletionStage
+     *
+     * @param invoker    调用者
+     * @param invocation 调用参数
+     * @return 调用结果的 CompletionStage
+     */
+    default CompletionStage<Result> invokeAsync(Invoker<?> invoker, Invocation invocation) {
+        return invoker.invokeAsync(invocation);
+    }
+
+    /**
+     * 异步调用正常完成时回调（在完成 Future 的线程上执行）
+     *
+     * @param result     调用结果
+     * @param invoker    调用者
+     * @param invocation 调用参数
+     * @return 传递给上一个过滤器的结果，可替换原结果
+     */
+    default Result onResponse(Result result, Invoker<?> invoker, Invocation invocation) {
+        return result;
+    }
+
+    /**
+     * 异步调用异常完成时回调（在完成 Future 的线程上执行），异常会继续向上传播
+     *
+     * @param cause      调用异常
+     * @param invoker    调用者
+     * @param invocation 调用参数
+     */
+    default void onError(Throwable cause, Invoker<?> invoker, Invocation invocation) {
+    }
 }
@@ -9,6 +9,7 @@ import io.homeey.matrix.rpc.spi.Activate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
+import java.util.concurrent.CompletionStage;
 
 /**
  * 访问日志过滤器
@@ -58,6 +59,22 @@ public class AccessLogFilter implements Filter {
         }
     }
 
+    @Override
+    public CompletionStage<Result> invokeAsync(Invoker<?> invoker, Invocation invocation) {
+        if (!FilterConfig.isEnabled(FILTER_NAME)) {
+            return invoker.invokeAsync(invocation);
+        }
+
+        long startTime = System.currentTimeMillis();
+        // 在调用完成时记录日志，不阻塞调用线程
+        return invoker.invokeAsync(invocation).whenComplete((result, error) -> {
+            long costTime = System.currentTimeMillis() - startTime;
+            boolean hasError = error != null || result.hasException();
+            logAccess(invocation.getServiceName(), invocation.methodName(), invocation.parameterTypes(),
+                    costTime, hasError);
+        });
+    }
+
     private void logAccess(String serviceName, String methodName, Class<?>[] paramTypes,
                            long costTime, boolean hasError) {
         String timestamp = LocalDateTime.now().format(FORMATTER);
@@ -7,6 +7,9 @@ import io.homeey.matrix.rpc.core.Invoker;
 import io.homeey.matrix.rpc.filter.Filter;
 import io.homeey.matrix.rpc.spi.Activate;
 
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
 /**
  * 异常处理过滤器
  * <p>
@@ -52,6 +55,27 @@ public class ExceptionFilter implements Filter {
         }
     }
 
+    @Override
+    public Result onResponse(Result result, Invoker<?> invoker, Invocation invocation) {
+        if (!FilterConfig.isEnabled(FILTER_NAME) || !result.hasException()) {
+            return result;
+        }
+        Throwable exception = result.getException();
+        logException(invocation, exception);
+        return new Result(wrapException(invocation, exception));
+    }
+
+    @Override
+    public CompletionStage<Result> invokeAsync(Invoker<?> invoker, Invocation invocation) {
+        if (!FilterConfig.isEnabled(FILTER_NAME)) {
+            return invoker.invokeAsync(invocation);
+        }
+        // 与同步路径一致：调用异常转为带异常的 Result，再由 onResponse 统一记录和包装
+        return invoker.invokeAsync(invocation).exceptionally(error ->
+                new Result(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error));
+    }
+
     private void logException(Invocation invocation, Throwable t) {
         System.err.printf("[ExceptionFilter] Service: %s, Method: %s, Exception: %s - %s%n",
                 invocation.getServiceName(),
@@ -7,6 +7,9 @@ import io.homeey.matrix.rpc.core.Invoker;
 import io.homeey.matrix.rpc.filter.Filter;
 import io.homeey.matrix.rpc.spi.Activate;
 
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
 /**
  * 超时检测过滤器
  * <p>
@@ -60,6 +63,32 @@ public class TimeoutFilter implements Filter {
         }
     }
 
+    @Override
+    public CompletionStage<Result> invokeAsync(Invoker<?> invoker, Invocation invocation) {
+        if (!FilterConfig.isEnabled(FILTER_NAME)) {
+            return invoker.invokeAsync(invocation);
+        }
+
+        long slowThreshold = FilterConfig.getLongConfig(FILTER_NAME, "threshold", DEFAULT_SLOW_THRESHOLD);
+        long startTime = System.currentTimeMillis();
+
+        // 在响应到达（或失败）时统计耗时，调用期间不占用线程
+        return invoker.invokeAsync(invocation).whenComplete((result, error) -> {
+            long costTime = System.currentTimeMillis() - startTime;
+            if (error != null) {
+                if (isTimeoutException(unwrap(error))) {
+                    logTimeout(invocation, costTime);
+                }
+            } else if (costTime > slowThreshold) {
+                logSlowCall(invocation, costTime, slowThreshold);
+            }
+        });
+    }
+
+    private Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
     private void logSlowCall(Invocation invocation, long costTime, long threshold) {
         System.out.printf("[TimeoutFilter] SLOW CALL - Service: %s, Method: %s, Cost: %dms (threshold: %dms)%n",
                 invocation.getServiceName(),
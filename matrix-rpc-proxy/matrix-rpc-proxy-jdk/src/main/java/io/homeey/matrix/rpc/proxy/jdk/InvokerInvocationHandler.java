@@ -7,6 +7,10 @@ import io.homeey.matrix.rpc.core.SimpleInvocation;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
 
 /**
  * JDK 动态代理的 InvocationHandler 实现
@@ -40,6 +44,18 @@ public class InvokerInvocationHandler implements InvocationHandler {
                 args == null ? new Object[0] : args
         );
 
+        // 返回 Flow.Publisher 的方法走流式调用，元素在订阅后按请求量逐批到达
+        if (method.getReturnType() == Flow.Publisher.class) {
+            return invoker.invokeStream(invocation);
+        }
+
+        // 返回 CompletableFuture / CompletionStage 的方法走异步调用，直接返回 Future 不阻塞调用线程
+        if (isAsyncMethod(method)) {
+            return invoker.invokeAsync(invocation)
+                    .thenApply(this::recreate)
+                    .toCompletableFuture();
+        }
+
         // 执行远程调用
         Result result = invoker.invoke(invocation);
 
@@ -51,6 +67,21 @@ public class InvokerInvocationHandler implements InvocationHandler {
         return result.getValue();
     }
 
+    private boolean isAsyncMethod(Method method) {
+        Class<?> returnType = method.getReturnType();
+        return returnType == CompletableFuture.class || returnType == CompletionStage.class;
+    }
+
+    /**
+     * 将 Result 还原为返回值，异常结果通过 CompletionException 传递给 Future
+     */
+    private Object recreate(Result result) {
+        if (result.hasException()) {
+            throw new CompletionException(result.getException());
+        }
+        return result.getValue();
+    }
+
     /**
      * 处理 Object 类的方法（toString, hashCode, equals）
      */
@@ -8,6 +8,7 @@ import io.homeey.matrix.rpc.common.URL;
 import io.homeey.matrix.rpc.registry.api.NotifyListener;
 import io.homeey.matrix.rpc.registry.api.Registry;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -20,6 +21,7 @@ import java.util.stream.Collectors;
  * @since 2026/01/03
  */
 public class NacosRegistry implements Registry {
+    private static final String UNIX_PATH_KEY = "unix.path";
     private final NamingService namingService;
     private final URL registryUrl;
     private final Map<String, List<URL>> serviceCache = new ConcurrentHashMap<>();
@@ -110,12 +112,17 @@ public class NacosRegistry implements Registry {
         instance.setEnabled(true);
 
         // 设置元数据
-        instance.setMetadata(Map.of(
-                "interface", url.getPath(),
-                "group", url.getParameter("group", ""),
-                "version", url.getParameter("version", "1.0.0"),
-                "protocol", url.getProtocol()
-        ));
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put("interface", url.getPath());
+        metadata.put("group", url.getParameter("group", ""));
+        metadata.put("version", url.getParameter("version", "1.0.0"));
+        metadata.put("protocol", url.getProtocol());
+        // 与 TCP 端点并列发布的 domain socket，同机消费者据此优先走本地 socket
+        String unixPath = url.getParameter(UNIX_PATH_KEY);
+        if (unixPath != null) {
+            metadata.put(UNIX_PATH_KEY, unixPath);
+        }
+        instance.setMetadata(metadata);
         return instance;
     }
 
@@ -127,11 +134,17 @@ public class NacosRegistry implements Registry {
                                 instance.getIp() + ":" + instance.getPort() + "/" +
                                 serviceInterface + "?" +
                                 "group=" + instance.getMetadata().get("group") + "&" +
-                                "version=" + instance.getMetadata().get("version")
+                                "version=" + instance.getMetadata().get("version") +
+                                unixPathParameter(instance)
                 ))
                 .collect(Collectors.toList());
     }
 
+    private String unixPathParameter(Instance instance) {
+        String unixPath = instance.getMetadata().get(UNIX_PATH_KEY);
+        return unixPath != null ? "&" + UNIX_PATH_KEY + "=" + unixPath : "";
+    }
+
     private String getServiceName(URL url) {
         return buildServiceName(
                 url.getPath(),
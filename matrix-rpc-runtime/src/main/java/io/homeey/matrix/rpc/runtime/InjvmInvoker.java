@@ -0,0 +1,152 @@
+package io.homeey.matrix.rpc.runtime;
+
+import io.homeey.matrix.rpc.codec.api.Codec;
+import io.homeey.matrix.rpc.common.Result;
+import io.homeey.matrix.rpc.common.RpcException;
+import io.homeey.matrix.rpc.core.Invocation;
+import io.homeey.matrix.rpc.core.Invoker;
+import io.homeey.matrix.rpc.core.SimpleInvocation;
+import io.homeey.matrix.rpc.spi.ExtensionLoader;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.function.Supplier;
+
+/**
+ * 同 JVM 调用的 Invoker：直接调用本地提供者的 Invoker，不经过传输层和序列化
+ * <p>
+ * 每次调用时查找本地提供者，找不到（尚未导出或已取消导出）时交给 fallback，没有 fallback 则返回错误。
+ * 默认按引用传递参数和返回值，双方修改对象会互相可见；开启拷贝模式后，
+ * 参数和返回值经 Kryo 深拷贝，语义与远程调用一致。流式调用的元素不做拷贝
+ *
+ * @param <T> 服务接口类型
+ */
+final class InjvmInvoker<T> extends AbstractInvoker<T> {
+
+    /**
+     * 不可变类型无需拷贝
+     */
+    private static final Set<Class<?>> IMMUTABLE_TYPES = Set.of(String.class, Integer.class, Long.class,
+            Short.class, Byte.class, Double.class, Float.class, Boolean.class, Character.class);
+
+    private final Supplier<Invoker<?>> localInvoker;
+    private final Invoker<T> fallback;
+    private final Codec codec;
+
+    /**
+     * @param type         服务接口类型
+     * @param localInvoker 查找本地提供者，不存在时返回 null
+     * @param fallback     本地提供者不存在时使用的 Invoker，可为 null
+     * @param copy         是否深拷贝参数和返回值
+     */
+    InjvmInvoker(Class<T> type, Supplier<Invoker<?>> localInvoker, Invoker<T> fallback, boolean copy) {
+        super(type);
+        this.localInvoker = localInvoker;
+        this.fallback = fallback;
+        this.codec = copy ? ExtensionLoader.getExtensionLoader(Codec.class).getExtension("kryo") : null;
+    }
+
+    @Override
+    public Result invoke(Invocation invocation) throws RpcException {
+        Invoker<?> local = localInvoker.get();
+        if (local == null) {
+            if (fallback != null) {
+                return fallback.invoke(invocation);
+            }
+            return new Result(noProvider(invocation));
+        }
+        return copyResult(local.invoke(copyInvocation(invocation)));
+    }
+
+    @Override
+    public CompletionStage<Result> invokeAsync(Invocation invocation) {
+        Invoker<?> local = localInvoker.get();
+        if (local == null) {
+            if (fallback != null) {
+                return fallback.invokeAsync(invocation);
+            }
+            return CompletableFuture.completedFuture(new Result(noProvider(invocation)));
+        }
+        return local.invokeAsync(copyInvocation(invocation)).thenApply(this::copyResult);
+    }
+
+    /**
+     * 本地提供者返回的 Publisher 直接交给调用方订阅，背压由 Publisher 自身保证
+     */
+    @Override
+    public Flow.Publisher<Object> invokeStream(Invocation invocation) {
+        Invoker<?> local = localInvoker.get();
+        if (local == null) {
+            if (fallback != null) {
+                return fallback.invokeStream(invocation);
+            }
+            throw noProvider(invocation);
+        }
+        Result result = local.invoke(copyInvocation(invocation));
+        if (result.hasException()) {
+            return failed(result.getException());
+        }
+        if (!(result.getValue() instanceof Flow.Publisher<?> publisher)) {
+            return failed(new RpcException("Method did not return a Flow.Publisher: "
+                    + invocation.getServiceName() + "#" + invocation.methodName()));
+        }
+        @SuppressWarnings("unchecked")
+        Flow.Publisher<Object> stream = (Flow.Publisher<Object>) publisher;
+        return stream;
+    }
+
+    private Invocation copyInvocation(Invocation invocation) {
+        if (codec == null) {
+            return invocation;
+        }
+        Object[] arguments = invocation.arguments();
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = copy(arguments[i]);
+        }
+        return new SimpleInvocation(invocation.getServiceName(), invocation.methodName(),
+                invocation.parameterTypes(), arguments, invocation.getAttachments());
+    }
+
+    private Result copyResult(Result result) {
+        if (codec == null || result.hasException()) {
+            return result;
+        }
+        return new Result(copy(result.getValue()));
+    }
+
+    private Object copy(Object value) {
+        if (value == null || IMMUTABLE_TYPES.contains(value.getClass())
+                || value instanceof Enum<?> || value instanceof Path || value instanceof Flow.Publisher<?>) {
+            return value;
+        }
+        if (value instanceof ByteBuffer buffer) {
+            ByteBuffer copy = ByteBuffer.allocate(buffer.remaining());
+            copy.put(buffer.duplicate()).flip();
+            return copy;
+        }
+        return codec.decode(codec.encode(value), Object.class);
+    }
+
+    private RpcException noProvider(Invocation invocation) {
+        return new RpcException("No local provider available for service: " + invocation.getServiceName());
+    }
+
+    private static Flow.Publisher<Object> failed(Throwable error) {
+        return subscriber -> {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(error);
+        };
+    }
+}
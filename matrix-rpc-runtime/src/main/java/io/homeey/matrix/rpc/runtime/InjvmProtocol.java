@@ -0,0 +1,90 @@
+package io.homeey.matrix.rpc.runtime;
+
+import io.homeey.matrix.rpc.common.URL;
+import io.homeey.matrix.rpc.core.Exporter;
+import io.homeey.matrix.rpc.core.Invoker;
+import io.homeey.matrix.rpc.runtime.support.FilterChainBuilder;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 同 JVM 协议：服务只登记在进程内，引用方直接调用提供者的 Invoker，不经过传输层和序列化
+ * <p>
+ * 登记表由所有协议共享：{@link MatrixProtocol} 导出的服务同样会登记在这里，
+ * 因此同进程内的 {@link RpcReference} 会自动改走本地调用。相关 URL 参数：
+ * <pre>
+ * injvm=false        # 消费端关闭本地优先，始终走远程
+ * injvm.copy=true    # 参数和返回值深拷贝后再传递，避免调用双方共享可变对象
+ * </pre>
+ */
+public class InjvmProtocol extends AbstractProtocol {
+
+    public static final String NAME = "injvm";
+    public static final String INJVM_KEY = "injvm";
+    public static final String COPY_KEY = "injvm.copy";
+
+    /**
+     * 进程内已导出的服务，键为 interface:group:version
+     */
+    private static final ConcurrentMap<String, Invoker<?>> LOCAL_INVOKERS = new ConcurrentHashMap<>();
+
+    @Override
+    protected <T> Exporter<T> createExporter(Invoker<T> invoker, URL url) {
+        String key = serviceKey(url);
+        Invoker<T> filteredInvoker = FilterChainBuilder.buildInvokerChain(invoker, "PROVIDER");
+        register(key, filteredInvoker);
+        System.out.println("[Matrix RPC] Service exported in jvm: " + key);
+        return new AbstractExporter<>(filteredInvoker) {
+            @Override
+            public void unexport() {
+                unregister(key, filteredInvoker);
+            }
+        };
+    }
+
+    @Override
+    protected <T> Invoker<T> createInvoker(Class<T> type, URL url) {
+        return preferLocal(type, url, null);
+    }
+
+    /**
+     * 每次调用时查找本进程导出的提供者，找不到（如已取消导出）时交给 fallback
+     *
+     * @param fallback 远程调用的 Invoker，为 null 时本地提供者不存在即返回错误
+     */
+    static <T> Invoker<T> preferLocal(Class<T> type, URL url, Invoker<T> fallback) {
+        String key = serviceKey(url);
+        Invoker<T> invoker = new InjvmInvoker<>(type, () -> LOCAL_INVOKERS.get(key), fallback, isCopy(url));
+        return FilterChainBuilder.buildInvokerChain(invoker, "CONSUMER");
+    }
+
+    /**
+     * 消费端 URL 对应的服务是否已在本进程导出且允许本地调用
+     */
+    public static boolean isExported(URL url) {
+        return isPreferred(url) && LOCAL_INVOKERS.containsKey(serviceKey(url));
+    }
+
+    static boolean isPreferred(URL url) {
+        return !"false".equals(url.getParameter(INJVM_KEY));
+    }
+
+    static boolean isCopy(URL url) {
+        return "true".equals(url.getParameter(COPY_KEY));
+    }
+
+    static void register(String key, Invoker<?> invoker) {
+        LOCAL_INVOKERS.put(key, invoker);
+    }
+
+    static void unregister(String key, Invoker<?> invoker) {
+        LOCAL_INVOKERS.remove(key, invoker);
+    }
+
+    static String serviceKey(URL url) {
+        return url.getPath() +
+                ":" + url.getParameter("group", "") +
+                ":" + url.getParameter("version", "1.0.0");
+    }
+}
@@ -9,37 +9,57 @@ import io.homeey.matrix.rpc.core.Invoker;
 import io.homeey.matrix.rpc.core.Protocol;
 import io.homeey.matrix.rpc.registry.api.Registry;
 import io.homeey.matrix.rpc.registry.api.RegistryFactory;
+import io.homeey.matrix.rpc.runtime.support.Bulkhead;
 import io.homeey.matrix.rpc.runtime.support.FilterChainBuilder;
 import io.homeey.matrix.rpc.spi.Activate;
 import io.homeey.matrix.rpc.spi.ExtensionLoader;
 import io.homeey.matrix.rpc.spi.SPI;
+import io.homeey.matrix.rpc.transport.api.RequestHandler;
+import io.homeey.matrix.rpc.transport.api.ServiceMethod;
 import io.homeey.matrix.rpc.transport.api.TransportClient;
 import io.homeey.matrix.rpc.transport.api.TransportServer;
-import io.homeey.matrix.rpc.transport.netty.client.NettyTransportClient;
+import io.homeey.matrix.rpc.transport.netty.TransportOptions;
 
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 @SPI("matrix")
 @Activate(order = 100)
 public class MatrixProtocol implements Protocol {
+    private static final long DEFAULT_TIMEOUT = 3000; // 默认3秒
+    /**
+     * 传输层扩展名（TransportServer / TransportClient），默认 netty
+     */
+    public static final String TRANSPORT_KEY = "transport";
+    private static final String DEFAULT_TRANSPORT = "netty";
     private final ConcurrentHashMap<String, Exporter<?>> exporters = new ConcurrentHashMap<>();
-    private final TransportServer transportServer;
+    private final ConcurrentHashMap<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+    private TransportServer transportServer;
+    private String serverTransport;
     private final AtomicBoolean initialized = new AtomicBoolean(false);
     private URL serverUrl;
     private final Registry registry;
+    // 键为 传输层@地址，同一地址的不同传输层各自持有客户端
     private final ConcurrentMap<String, TransportClient> clients = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, List<URL>> serviceUrls = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, URL> consumerUrls = new ConcurrentHashMap<>();
 
 
     public MatrixProtocol() {
-        // 1. 通过SPI加载Transport
-        this.transportServer = ExtensionLoader.getExtensionLoader(TransportServer.class)
-                .getExtension("netty");
-
-        // 2. 默认使用memory注册中心，可通过系统属性覆盖
+        // 默认使用memory注册中心，可通过系统属性覆盖
         String registryAddress = System.getProperty("matrix.registry.address", "memory://localhost");
         URL registryUrl = URL.valueOf(registryAddress);
         RegistryFactory registryFactory = ExtensionLoader.getExtensionLoader(RegistryFactory.class)
@@ -51,11 +71,34 @@ public class MatrixProtocol implements Protocol {
 
     @Override
     public synchronized <T> Exporter<T> export(Invoker<T> invoker, URL url) {
-        // 1. 初始化服务器（仅第一次调用时启动）
+        // 1. 初始化服务器（仅第一次调用时启动）；所有服务共用一个传输层服务端，不接受混用传输层
+        String transport = url.getParameter(TRANSPORT_KEY, DEFAULT_TRANSPORT);
+        if (initialized.get() && !transport.equals(serverTransport)) {
+            throw new IllegalStateException("Transport " + transport + " of " + invoker.getInterface().getName()
+                    + " differs from the running " + serverTransport + " server");
+        }
         if (initialized.compareAndSet(false, true)) {
             this.serverUrl = url;
-            // 2. 启动传输层，设置请求处理器
-            transportServer.start(url, this::handleRequest);
+            this.serverTransport = transport;
+            // 2. 通过 SPI 加载传输层并启动，设置请求处理器
+            transportServer = ExtensionLoader.getExtensionLoader(TransportServer.class)
+                    .getExtension(transport);
+            transportServer.start(url, new RequestHandler() {
+                @Override
+                public Result handle(Invocation invocation) {
+                    return handleRequest(invocation);
+                }
+
+                @Override
+                public CompletionStage<Result> handleAsync(Invocation invocation) {
+                    return handleRequestAsync(invocation);
+                }
+
+                @Override
+                public List<ServiceMethod> methods() {
+                    return exportedMethods();
+                }
+            });
         }
 
         // 3. 为 Invoker 包装 Provider 端 Filter 链
@@ -64,6 +107,16 @@ public class MatrixProtocol implements Protocol {
         // 4. 注册服务
         String key = serviceKey(url, invoker.getInterface());
         exporters.put(key, new AbstractExporter<>(filteredInvoker));
+        // 重复导出时替换隔离舱：旧的执行器需要关闭，新配置未启用隔离舱时也不能沿用旧的
+        Bulkhead bulkhead = Bulkhead.from(url, invoker.getInterface().getSimpleName());
+        Bulkhead previous = bulkhead != null ? bulkheads.put(key, bulkhead) : bulkheads.remove(key);
+        if (previous != null) {
+            previous.shutdown();
+        }
+
+        // 同进程的引用方经由登记表直接调用，仍受隔离执行器约束
+        Invoker<T> localInvoker = localInvoker(key, invoker.getInterface());
+        InjvmProtocol.register(key, localInvoker);
 
         System.out.println("[Matrix RPC] Service exported: " + key);
         // 5. 注册到注册中心
@@ -72,7 +125,12 @@ public class MatrixProtocol implements Protocol {
         return new AbstractExporter<T>(filteredInvoker) {
             @Override
             public void unexport() {
+                InjvmProtocol.unregister(key, localInvoker);
                 exporters.remove(key);
+                // 只移除本次导出创建的隔离舱，已被重新导出替换的早已关闭
+                if (bulkhead != null && bulkheads.remove(key, bulkhead)) {
+                    bulkhead.shutdown();
+                }
                 if (exporters.isEmpty()) {
                     try {
                         transportServer.close();
@@ -89,6 +147,7 @@ public class MatrixProtocol implements Protocol {
     public <T> Invoker<T> refer(Class<T> type, URL url) {
         // 1. 订阅服务变化
         String serviceKey = serviceKey(url, type);
+        consumerUrls.put(serviceKey, url);
         registry.subscribe(type.getName(), urls -> {
             serviceUrls.put(serviceKey, urls);
             System.out.println("[Matrix RPC] Service updated: " + serviceKey + ", providers: " + urls.size());
@@ -102,41 +161,99 @@ public class MatrixProtocol implements Protocol {
         Invoker<T> remoteInvoker = new AbstractInvoker<T>(type) {
             @Override
             public Result invoke(Invocation invocation) throws RpcException {
-                // 1. 获取可用服务提供者
-                List<URL> providers = serviceUrls.get(serviceKey);
-                if (providers == null || providers.isEmpty()) {
-                    throw new RpcException("No provider available for service: " + serviceKey);
+                // 发送请求 (带超时)
+                return selectClient(serviceKey, invocation).send(invocation, DEFAULT_TIMEOUT);
+            }
+
+            @Override
+            public CompletionStage<Result> invokeAsync(Invocation invocation) {
+                try {
+                    return selectClient(serviceKey, invocation).sendAsync(invocation, DEFAULT_TIMEOUT);
+                } catch (RuntimeException e) {
+                    return CompletableFuture.failedFuture(e);
                 }
+            }
+
+            @Override
+            public Flow.Publisher<Object> invokeStream(Invocation invocation) {
+                return selectClient(serviceKey, invocation).openStream(invocation);
+            }
+        };
 
-                // 2. 负载均衡选择 (Phase 2.2 实现)
-                URL providerUrl = selectProvider(providers, invocation);
+        // 4. 提供者在本进程导出时直接调用本地 Invoker，不经过传输层和序列化；每次调用时检测，取消导出后回落到远程
+        Invoker<T> invoker = remoteInvoker;
+        if (InjvmProtocol.isPreferred(url)) {
+            Invoker<T> localInvoker = localInvoker(serviceKey, type);
+            invoker = new InjvmInvoker<>(type, () -> exporters.containsKey(serviceKey) ? localInvoker : null,
+                    remoteInvoker, InjvmProtocol.isCopy(url));
+        }
 
-                // 3. 获取/创建客户端
-                TransportClient client = clients.computeIfAbsent(
-                        providerUrl.getAddress(),
-                        k -> createClient(providerUrl)
-                );
+        // 5. 为 Invoker 包装 Consumer 端 Filter 链
+        return FilterChainBuilder.buildInvokerChain(invoker, "CONSUMER");
+    }
 
-                // 4. 发送请求 (带超时)
-                long timeout = 3000; // 默认3秒
-                return client.send(invocation, timeout);
+    private TransportClient selectClient(String serviceKey, Invocation invocation) {
+        // 1. 获取可用服务提供者
+        List<URL> providers = serviceUrls.get(serviceKey);
+        if (providers == null || providers.isEmpty()) {
+            throw new RpcException("No provider available for service: " + serviceKey);
+        }
+
+        // 2. 负载均衡选择 (Phase 2.2 实现)
+        URL providerUrl = selectProvider(providers, invocation);
+
+        // 3. 获取/创建客户端（连接数等客户端参数取自消费端 URL）
+        URL consumerUrl = consumerUrls.get(serviceKey);
+        TransportClient client = clients.computeIfAbsent(
+                clientKey(providerUrl, consumerUrl),
+                k -> createClient(clientUrl(providerUrl, consumerUrl))
+        );
+        if (client.isConnected()) {
+            return client;
+        }
+
+        // 4. 选中的提供者正在后台重连，改用其他已连接的提供者，避免请求白白等到超时
+        for (URL provider : providers) {
+            TransportClient candidate = clients.get(clientKey(provider, consumerUrl));
+            if (candidate != null && candidate.isConnected()) {
+                return candidate;
             }
-        };
+        }
+        return client;
+    }
 
-        // 4. 为 Invoker 包装 Consumer 端 Filter 链
-        return FilterChainBuilder.buildInvokerChain(remoteInvoker, "CONSUMER");
+    /**
+     * 直接调用本进程导出的服务，与远程请求共用同一套派发逻辑
+     */
+    private <T> Invoker<T> localInvoker(String key, Class<T> type) {
+        return new AbstractInvoker<T>(type) {
+            @Override
+            public Result invoke(Invocation invocation) throws RpcException {
+                return handleRequest(key, invocation);
+            }
+
+            @Override
+            public CompletionStage<Result> invokeAsync(Invocation invocation) {
+                return handleRequestAsync(key, invocation);
+            }
+        };
     }
 
     // 处理请求的核心方法
     private Result handleRequest(Invocation invocation) {
-        String key = invocation.getServiceName() +
-                ":" + invocation.getAttachments().getOrDefault("group", "") +
-                ":" + invocation.getAttachments().getOrDefault("version", "1.0.0");
+        return handleRequest(exporterKey(invocation), invocation);
+    }
+
+    private Result handleRequest(String key, Invocation invocation) {
         Exporter<?> exporter = exporters.get(key);
 
         if (exporter == null) {
             return new Result(new IllegalStateException("Service not found: " + key));
         }
+        if (bulkheads.containsKey(key)) {
+            // 配置了隔离执行器时统一走异步路径，保证并发限制生效
+            return handleRequestAsync(key, invocation).toCompletableFuture().join();
+        }
 
         try {
             return exporter.getInvoker().invoke(invocation);
@@ -145,9 +262,88 @@ public class MatrixProtocol implements Protocol {
         }
     }
 
+    // 异步处理请求：服务实现返回 CompletableFuture 时，待其完成后才写回响应
+    private CompletionStage<Result> handleRequestAsync(Invocation invocation) {
+        return handleRequestAsync(exporterKey(invocation), invocation);
+    }
+
+    private CompletionStage<Result> handleRequestAsync(String key, Invocation invocation) {
+        Exporter<?> exporter = exporters.get(key);
+
+        if (exporter == null) {
+            return CompletableFuture.completedFuture(
+                    new Result(new IllegalStateException("Service not found: " + key)));
+        }
+
+        Bulkhead bulkhead = bulkheads.get(key);
+        Bulkhead.Compartment compartment = bulkhead != null ? bulkhead.compartmentFor(invocation.methodName()) : null;
+        if (compartment == null) {
+            return invokeExporter(exporter, invocation);
+        }
+
+        // 在服务/方法独占的执行器中调用，许可持有到结果完成，饱和时以可重试的错误码快速拒绝
+        if (!compartment.tryAcquire()) {
+            return CompletableFuture.completedFuture(bulkheadRejected(key, invocation));
+        }
+        CompletableFuture<Result> future = new CompletableFuture<>();
+        try {
+            compartment.execute(() -> {
+                CompletionStage<Result> stage;
+                try {
+                    stage = invokeExporter(exporter, invocation);
+                } catch (RuntimeException e) {
+                    stage = CompletableFuture.completedFuture(new Result(e));
+                }
+                stage.whenComplete((result, error) -> {
+                    compartment.release();
+                    future.complete(error != null ? new Result(error) : result);
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            compartment.release();
+            return CompletableFuture.completedFuture(bulkheadRejected(key, invocation));
+        }
+        return future;
+    }
+
+    private static Result bulkheadRejected(String key, Invocation invocation) {
+        return new Result(new RpcException(RpcException.BULKHEAD_REJECTED,
+                "Bulkhead is full: " + key + "#" + invocation.methodName()));
+    }
+
+    private CompletionStage<Result> invokeExporter(Exporter<?> exporter, Invocation invocation) {
+        return exporter.getInvoker().invokeAsync(invocation).exceptionally(error ->
+                new Result(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error));
+    }
+
+    /**
+     * 已导出服务的接口方法，同一接口以不同分组 / 版本导出时只出现一次
+     */
+    private List<ServiceMethod> exportedMethods() {
+        Set<ServiceMethod> methods = new LinkedHashSet<>();
+        for (Exporter<?> exporter : exporters.values()) {
+            Class<?> type = exporter.getInvoker().getInterface();
+            for (Method method : type.getMethods()) {
+                if (!Modifier.isStatic(method.getModifiers())) {
+                    methods.add(new ServiceMethod(type.getName(), method.getName(), method.getParameterTypes()));
+                }
+            }
+        }
+        return List.copyOf(methods);
+    }
+
+    private String exporterKey(Invocation invocation) {
+        return invocation.getServiceName() +
+                ":" + invocation.getAttachments().getOrDefault("group", "") +
+                ":" + invocation.getAttachments().getOrDefault("version", "1.0.0");
+    }
+
     private TransportClient createClient(URL url) {
-        // 直接创建NettyTransportClient（因为需要URL参数）
-        NettyTransportClient client = new NettyTransportClient(url);
+        // 每个提供者地址各自持有一个客户端实例，不使用 SPI 缓存的单例
+        TransportClient client = ExtensionLoader.getExtensionLoader(TransportClient.class)
+                .newExtension(url.getParameter(TRANSPORT_KEY, DEFAULT_TRANSPORT));
+        client.init(url);
         try {
             client.connect();
         } catch (Exception e) {
@@ -156,6 +352,36 @@ public class MatrixProtocol implements Protocol {
         return client;
     }
 
+    /**
+     * 客户端缓存键：传输层与 clientUrl 的选择规则一致，消费端指定优先，否则沿用提供者发布的传输层
+     */
+    private String clientKey(URL providerUrl, URL consumerUrl) {
+        String transport = consumerUrl != null ? consumerUrl.getParameter(TRANSPORT_KEY) : null;
+        if (transport == null) {
+            transport = providerUrl.getParameter(TRANSPORT_KEY, DEFAULT_TRANSPORT);
+        }
+        return transport + "@" + providerUrl.getAddress();
+    }
+
+    private URL clientUrl(URL providerUrl, URL consumerUrl) {
+        if (consumerUrl == null) {
+            return providerUrl;
+        }
+        Map<String, String> parameters = new HashMap<>(consumerUrl.getParameters());
+        // 提供者发布的 domain socket 地址属于端点信息，需随提供者地址保留
+        String unixPath = providerUrl.getParameter(TransportOptions.UNIX_PATH_KEY);
+        if (unixPath != null) {
+            parameters.put(TransportOptions.UNIX_PATH_KEY, unixPath);
+        }
+        // 消费端未指定传输层时沿用提供者发布的传输层
+        String transport = providerUrl.getParameter(TRANSPORT_KEY);
+        if (transport != null) {
+            parameters.putIfAbsent(TRANSPORT_KEY, transport);
+        }
+        return new URL(providerUrl.getProtocol(), providerUrl.getHost(), providerUrl.getPort(),
+                providerUrl.getPath(), parameters);
+    }
+
     private URL selectProvider(List<URL> providers, Invocation invocation) {
         // 简化版：随机选择
         return providers.get((int) (Math.random() * providers.size()));
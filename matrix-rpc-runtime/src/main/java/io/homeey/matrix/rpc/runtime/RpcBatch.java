@@ -0,0 +1,116 @@
+package io.homeey.matrix.rpc.runtime;
+
+import io.homeey.matrix.rpc.common.Result;
+import io.homeey.matrix.rpc.common.RpcException;
+import io.homeey.matrix.rpc.core.Invocation;
+import io.homeey.matrix.rpc.core.SimpleInvocation;
+import io.homeey.matrix.rpc.transport.api.TransportClient;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * 批量调用：多个调用在一个帧中发出，提供端并行执行后在一个帧中返回全部结果。
+ * <p>
+ * 用法示例：
+ * <pre>
+ * List&lt;Result&gt; results = reference.batch()
+ *     .add(s -&gt; s.echo("a"))
+ *     .add(s -&gt; s.getUser(1L))
+ *     .execute();
+ * String echo = results.get(0).getValue(String.class);
+ * </pre>
+ * 每个 {@code add} 中的 lambda 只能调用一次服务方法，调用被记录下来而不会立即发出。
+ * 结果与添加顺序一一对应，单个调用失败体现在其 Result 中，不影响其他调用
+ *
+ * @param <T> 服务接口类型
+ */
+public class RpcBatch<T> {
+
+    private final Class<T> interfaceClass;
+    private final TransportClient client;
+    private final long timeout;
+    private final List<Invocation> invocations = new ArrayList<>();
+    private final T recorder;
+
+    @SuppressWarnings("unchecked")
+    RpcBatch(Class<T> interfaceClass, TransportClient client, long timeout) {
+        this.interfaceClass = interfaceClass;
+        this.client = client;
+        this.timeout = timeout;
+        this.recorder = (T) Proxy.newProxyInstance(interfaceClass.getClassLoader(),
+                new Class<?>[]{interfaceClass}, (proxy, method, args) -> record(method, args));
+    }
+
+    /**
+     * 记录一次服务方法调用
+     */
+    public RpcBatch<T> add(Consumer<T> call) {
+        int before = invocations.size();
+        call.accept(recorder);
+        if (invocations.size() != before + 1) {
+            throw new IllegalArgumentException("Each batch entry must call exactly one service method");
+        }
+        return this;
+    }
+
+    /**
+     * 直接添加调用信息
+     */
+    public RpcBatch<T> add(Invocation invocation) {
+        invocations.add(invocation);
+        return this;
+    }
+
+    public int size() {
+        return invocations.size();
+    }
+
+    /**
+     * 异步执行批量调用
+     */
+    public CompletableFuture<List<Result>> executeAsync() {
+        return client.sendBatchAsync(List.copyOf(invocations), timeout);
+    }
+
+    /**
+     * 执行批量调用并阻塞等待全部结果
+     */
+    public List<Result> execute() {
+        try {
+            return executeAsync().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RpcException("Interrupted while waiting for RPC batch response", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RpcException rpcException) {
+                throw rpcException;
+            }
+            throw new RpcException("Failed to send RPC batch request", cause);
+        }
+    }
+
+    private Object record(Method method, Object[] args) {
+        if (method.getDeclaringClass() == Object.class) {
+            throw new UnsupportedOperationException("Object methods cannot be batched: " + method.getName());
+        }
+        invocations.add(new SimpleInvocation(
+                interfaceClass.getName(),
+                method.getName(),
+                method.getParameterTypes(),
+                args == null ? new Object[0] : args
+        ));
+        // 记录阶段没有真实返回值，基本类型返回零值以免拆箱失败
+        Class<?> returnType = method.getReturnType();
+        return returnType.isPrimitive() && returnType != void.class
+                ? Array.get(Array.newInstance(returnType, 1), 0)
+                : null;
+    }
+}
@@ -1,16 +1,23 @@
 package io.homeey.matrix.rpc.runtime;
 
 import io.homeey.matrix.rpc.common.Result;
+import io.homeey.matrix.rpc.common.RpcException;
 import io.homeey.matrix.rpc.common.URL;
 import io.homeey.matrix.rpc.core.Invocation;
 import io.homeey.matrix.rpc.core.Invoker;
+import io.homeey.matrix.rpc.core.Protocol;
 import io.homeey.matrix.rpc.proxy.api.ProxyFactory;
+import io.homeey.matrix.rpc.runtime.support.FilterChainBuilder;
 import io.homeey.matrix.rpc.spi.ExtensionLoader;
 import io.homeey.matrix.rpc.transport.api.TransportClient;
+import io.homeey.matrix.rpc.transport.netty.TransportOptions;
 
 import java.io.Closeable;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
 
 /**
  * RPC 服务引用的简化入口。
@@ -25,8 +32,18 @@ import java.util.Map;
  * EchoService service = RpcReference.create(EchoService.class)
  *     .address("localhost", 20880)
  *     .timeout(5000)
+ *     .connections(4)
  *     .get();
+ *
+ * // 批量调用：一个帧发出，提供端并行执行
+ * RpcReference&lt;EchoService&gt; reference = RpcReference.create(EchoService.class).address("localhost", 20880);
+ * List&lt;Result&gt; results = reference.batch()
+ *     .add(s -&gt; s.echo("a"))
+ *     .add(s -&gt; s.echo("b"))
+ *     .execute();
  * </pre>
+ * 服务已在本进程导出时（{@link RpcService}），引用直接调用本地实现，不建立连接也不做序列化，
+ * 取消导出后回落到配置的远程地址，连接在首次回落时才建立；通过 {@code parameter("injvm", "false")} 可强制走远程，{@code parameter("injvm.copy", "true")} 开启参数与返回值的深拷贝
  * 
  * @param <T> 服务接口类型
  */
@@ -36,10 +53,13 @@ public class RpcReference<T> implements Closeable {
     private String host = "localhost";
     private int port = 20880;
     private int timeout = 3000;
+    private int connections = 1;
+    private final Map<String, String> parameters = new HashMap<>();
     private String protocol = "matrix";
     private String proxyType = "jdk";
     
-    private TransportClient client;
+    private volatile TransportClient client;
+    private Invoker<T> localInvoker;
     private T proxy;
 
     private RpcReference(Class<T> interfaceClass) {
@@ -79,6 +99,44 @@ public class RpcReference<T> implements Closeable {
         return this;
     }
 
+    /**
+     * 设置到服务端的连接数（默认 1），高 QPS 场景下可避免单连接成为瓶颈
+     */
+    public RpcReference<T> connections(int connections) {
+        this.connections = connections;
+        return this;
+    }
+
+    /**
+     * 设置扩展参数（如 transport.io=epoll），透传到引用 URL
+     */
+    public RpcReference<T> parameter(String key, String value) {
+        this.parameters.put(key, value);
+        return this;
+    }
+
+    /**
+     * 指定服务端的 Unix domain socket，文件存在且服务端地址为本机时代替 TCP 连接
+     * <pre>
+     * RpcReference.create(EchoService.class)
+     *     .address("localhost", 20880)
+     *     .unixSocket("/var/run/matrix/echo.sock")
+     *     .get();
+     * </pre>
+     */
+    public RpcReference<T> unixSocket(String path) {
+        this.parameters.put(TransportOptions.UNIX_PATH_KEY, path);
+        return this;
+    }
+
+    /**
+     * 指定传输层扩展名（默认 netty），需与服务端一致，如 shm 共享内存传输
+     */
+    public RpcReference<T> transport(String transport) {
+        this.parameters.put(MatrixProtocol.TRANSPORT_KEY, transport);
+        return this;
+    }
+
     /**
      * 设置协议类型（默认 matrix）
      */
@@ -105,18 +163,30 @@ public class RpcReference<T> implements Closeable {
 
         try {
             // 1. 创建 URL
-            Map<String, String> params = new HashMap<>();
+            Map<String, String> params = new HashMap<>(parameters);
             params.put("timeout", String.valueOf(timeout));
+            params.put("connections", String.valueOf(connections));
             URL url = new URL(protocol, host, port, interfaceClass.getName(), params);
 
-            // 2. 通过 SPI 获取 TransportClient 并连接
-            client = ExtensionLoader.getExtensionLoader(TransportClient.class)
-                    .getDefaultExtension();
-            client.init(url);
-            client.connect();
+            Invoker<T> invoker;
+            if (InjvmProtocol.NAME.equals(protocol)) {
+                // 2. 纯本地协议，没有远程地址可回落
+                localInvoker = ExtensionLoader.getExtensionLoader(Protocol.class)
+                        .getExtension(InjvmProtocol.NAME)
+                        .refer(interfaceClass, url);
+                invoker = localInvoker;
+            } else if (InjvmProtocol.isExported(url)) {
+                // 2. 服务在本进程导出，直接调用本地 Invoker；取消导出后回落到远程地址，
+                //    消费端过滤器由 preferLocal 统一包装，两条路径都只经过一次
+                localInvoker = InjvmProtocol.preferLocal(interfaceClass, url, createInvoker(url));
+                invoker = localInvoker;
+            } else {
+                // 2. 通过 SPI 获取 TransportClient 并连接
+                connectedClient(url);
 
-            // 3. 创建 Invoker
-            Invoker<T> invoker = createInvoker(url);
+                // 3. 创建 Invoker，并与本地调用一样经过消费端过滤器链
+                invoker = FilterChainBuilder.buildInvokerChain(createInvoker(url), "CONSUMER");
+            }
 
             // 4. 通过 SPI 获取 ProxyFactory 创建代理
             ProxyFactory proxyFactory = ExtensionLoader.getExtensionLoader(ProxyFactory.class)
@@ -129,10 +199,35 @@ public class RpcReference<T> implements Closeable {
         }
     }
 
+    /**
+     * 取得已连接的客户端，首次使用时创建；transport 参数可指定传输层（如 shm）
+     */
+    private TransportClient connectedClient(URL url) {
+        TransportClient current = client;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (client == null) {
+                ExtensionLoader<TransportClient> clientLoader = ExtensionLoader.getExtensionLoader(TransportClient.class);
+                String transport = parameters.get(MatrixProtocol.TRANSPORT_KEY);
+                TransportClient created = transport != null
+                        ? clientLoader.newExtension(transport) : clientLoader.getDefaultExtension();
+                created.init(url);
+                try {
+                    created.connect();
+                } catch (Exception e) {
+                    throw new RpcException("Failed to connect to " + url.getAddress(), e);
+                }
+                client = created;
+            }
+            return client;
+        }
+    }
+
     private Invoker<T> createInvoker(URL url) {
-        final TransportClient transportClient = this.client;
         final int invokeTimeout = this.timeout;
-        
+
         return new Invoker<T>() {
             @Override
             public Class<T> getInterface() {
@@ -141,7 +236,60 @@ public class RpcReference<T> implements Closeable {
 
             @Override
             public Result invoke(Invocation invocation) {
-                return transportClient.send(invocation, invokeTimeout);
+                return connectedClient(url).send(invocation, invokeTimeout);
+            }
+
+            @Override
+            public CompletionStage<Result> invokeAsync(Invocation invocation) {
+                try {
+                    return connectedClient(url).sendAsync(invocation, invokeTimeout);
+                } catch (RuntimeException e) {
+                    return CompletableFuture.failedFuture(e);
+                }
+            }
+
+            @Override
+            public Flow.Publisher<Object> invokeStream(Invocation invocation) {
+                return connectedClient(url).openStream(invocation);
+            }
+        };
+    }
+
+    /**
+     * 创建批量调用，未建立连接时先建立连接
+     */
+    public RpcBatch<T> batch() {
+        if (client == null && localInvoker == null) {
+            get();
+        }
+        return new RpcBatch<>(interfaceClass, client != null ? client : localClient(localInvoker), timeout);
+    }
+
+    /**
+     * 本地调用时的批量调用入口：逐个调用本地 Invoker 后合并结果
+     */
+    private static TransportClient localClient(Invoker<?> invoker) {
+        return new TransportClient() {
+            @Override
+            public void init(URL url) {
+            }
+
+            @Override
+            public CompletableFuture<Result> sendAsync(Invocation invocation, long timeout) {
+                return invoker.invokeAsync(invocation).toCompletableFuture();
+            }
+
+            @Override
+            public void connect() {
+            }
+
+            @Override
+            public boolean isConnected() {
+                return true;
+            }
+
+            @Override
+            public void close() {
             }
         };
     }
@@ -159,6 +307,7 @@ public class RpcReference<T> implements Closeable {
             }
             client = null;
         }
+        localInvoker = null;
         proxy = null;
     }
 
@@ -166,6 +315,6 @@ public class RpcReference<T> implements Closeable {
      * 获取当前连接状态
      */
     public boolean isConnected() {
-        return client != null && client.isConnected();
+        return localInvoker != null || client != null && client.isConnected();
     }
 }
@@ -1,15 +1,15 @@
 package io.homeey.matrix.rpc.runtime;
 
-import io.homeey.matrix.rpc.common.Result;
 import io.homeey.matrix.rpc.common.URL;
 import io.homeey.matrix.rpc.core.Exporter;
-import io.homeey.matrix.rpc.core.Invocation;
 import io.homeey.matrix.rpc.core.Invoker;
 import io.homeey.matrix.rpc.core.Protocol;
+import io.homeey.matrix.rpc.runtime.support.Bulkhead;
+import io.homeey.matrix.rpc.runtime.support.MethodHandleInvoker;
 import io.homeey.matrix.rpc.spi.ExtensionLoader;
+import io.homeey.matrix.rpc.transport.netty.TransportOptions;
 
 import java.io.Closeable;
-import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -25,6 +25,9 @@ import java.util.Map;
  * RpcService.create(EchoService.class, new EchoServiceImpl())
  *     .port(20880)
  *     .version("2.0.0")
+ *     .parameter("transport.io", "epoll")
+ *     .bulkhead(20, 100)             // 服务独占 20 线程 + 100 队列
+ *     .bulkhead("slowMethod", 4, 0)  // 慢方法再单独隔离
  *     .export()
  *     .await();
  * </pre>
@@ -41,6 +44,7 @@ public class RpcService<T> implements Closeable {
     private String protocol = "matrix";
     private String group = "";
     private String version = "1.0.0";
+    private final Map<String, String> parameters = new HashMap<>();
 
     private Exporter<T> exporter;
     private volatile boolean exported = false;
@@ -127,6 +131,62 @@ public class RpcService<T> implements Closeable {
         return this;
     }
 
+    /**
+     * 设置扩展参数（如 transport.io=epoll、transport.acceptors=4），透传到服务 URL
+     */
+    public RpcService<T> parameter(String key, String value) {
+        this.parameters.put(key, value);
+        return this;
+    }
+
+    /**
+     * 在 TCP 端口之外额外监听 Unix domain socket，并随服务地址一起发布到注册中心，
+     * 同机的消费者会自动改走该 socket（io_uring 传输下不支持，仅监听 TCP）
+     * <pre>
+     * RpcService.create(EchoService.class, new EchoServiceImpl())
+     *     .port(20880)
+     *     .unixSocket("/var/run/matrix/echo.sock")
+     *     .export();
+     * </pre>
+     */
+    public RpcService<T> unixSocket(String path) {
+        this.parameters.put(TransportOptions.UNIX_PATH_KEY, path);
+        return this;
+    }
+
+    /**
+     * 指定传输层扩展名（默认 netty）。shm 为共享内存传输，只服务同机的消费者，不监听 TCP 端口
+     */
+    public RpcService<T> transport(String transport) {
+        this.parameters.put(MatrixProtocol.TRANSPORT_KEY, transport);
+        return this;
+    }
+
+    /**
+     * 为整个服务配置独立的隔离执行器，与同端口上的其他服务互不影响
+     *
+     * @param threads 最大并发数
+     * @param queues  等待队列长度，0 表示不排队，饱和即拒绝
+     */
+    public RpcService<T> bulkhead(int threads, int queues) {
+        this.parameters.put(Bulkhead.THREADS_KEY, String.valueOf(threads));
+        this.parameters.put(Bulkhead.QUEUES_KEY, String.valueOf(queues));
+        return this;
+    }
+
+    /**
+     * 为单个方法配置独立的隔离执行器，优先于服务级配置
+     *
+     * @param methodName 方法名（同名重载共享同一执行器）
+     * @param threads    最大并发数
+     * @param queues     等待队列长度，0 表示不排队，饱和即拒绝
+     */
+    public RpcService<T> bulkhead(String methodName, int threads, int queues) {
+        this.parameters.put(methodName + "." + Bulkhead.THREADS_KEY, String.valueOf(threads));
+        this.parameters.put(methodName + "." + Bulkhead.QUEUES_KEY, String.valueOf(queues));
+        return this;
+    }
+
     /**
      * 暴露服务
      *
@@ -138,11 +198,11 @@ public class RpcService<T> implements Closeable {
         }
 
         try {
-            // 1. 创建通用反射 Invoker
-            Invoker<T> invoker = createReflectiveInvoker();
+            // 1. 为接口方法生成绑定到实现的 MethodHandle，调用时不再经过反射
+            Invoker<T> invoker = new MethodHandleInvoker<>(interfaceClass, implementation);
 
             // 2. 构建 URL
-            Map<String, String> params = new HashMap<>();
+            Map<String, String> params = new HashMap<>(parameters);
             if (group != null && !group.isEmpty()) {
                 params.put("group", group);
             }
@@ -161,37 +221,6 @@ public class RpcService<T> implements Closeable {
         }
     }
 
-    /**
-     * 创建基于反射的通用 Invoker
-     */
-    private Invoker<T> createReflectiveInvoker() {
-        final T target = this.implementation;
-        final Class<T> iface = this.interfaceClass;
-
-        return new Invoker<T>() {
-            @Override
-            public Class<T> getInterface() {
-                return iface;
-            }
-
-            @Override
-            public Result invoke(Invocation invocation) {
-                try {
-                    // 通过反射调用目标方法
-                    Method method = target.getClass().getMethod(
-                            invocation.methodName(),
-                            invocation.parameterTypes()
-                    );
-                    Object result = method.invoke(target, invocation.arguments());
-                    return new Result(result);
-                } catch (Exception e) {
-                    Throwable cause = e.getCause() != null ? e.getCause() : e;
-                    return new Result(cause);
-                }
-            }
-        };
-    }
-
     /**
      * 阻塞等待服务运行（通常在 main 方法末尾调用）
      */
@@ -0,0 +1,122 @@
+package io.homeey.matrix.rpc.runtime.support;
+
+import io.homeey.matrix.rpc.common.ThreadPools;
+import io.homeey.matrix.rpc.common.URL;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 服务级 / 方法级隔离执行器（舱壁）
+ * <p>
+ * 每个导出服务可以拥有独立的有界线程池，某个方法还可以再单独隔离，
+ * 一个接口的流量突增只会耗尽自己的线程和队列，不会拖垮同端口上的其他服务。
+ * 饱和时由调用方以 BULKHEAD_REJECTED 快速拒绝。
+ * 并发上限按在途调用计数（threads + queues 个许可），许可在调用结果完成时才归还，
+ * 返回 CompletableFuture 的异步服务同样受限，而不只是限制提交任务的线程
+ * <p>
+ * 配置（服务 URL 参数，通常由 RpcService#bulkhead 设置）：
+ * <pre>
+ * bulkhead.threads=20&amp;bulkhead.queues=100          # 服务级
+ * echo.bulkhead.threads=5&amp;echo.bulkhead.queues=0     # 方法级（优先于服务级）
+ * bulkhead.threadpool=virtual                         # 线程池类型，默认 fixed
+ * </pre>
+ */
+public final class Bulkhead {
+
+    public static final String PREFIX = "bulkhead.";
+    public static final String THREADS_KEY = PREFIX + "threads";
+    public static final String QUEUES_KEY = PREFIX + "queues";
+    public static final String THREADPOOL_KEY = PREFIX + "threadpool";
+
+    private final Compartment serviceCompartment;
+    private final Map<String, Compartment> methodCompartments;
+
+    private Bulkhead(Compartment serviceCompartment, Map<String, Compartment> methodCompartments) {
+        this.serviceCompartment = serviceCompartment;
+        this.methodCompartments = methodCompartments;
+    }
+
+    /**
+     * 根据服务 URL 创建舱壁，未配置任何隔离时返回 null
+     *
+     * @param name 线程名前缀
+     */
+    public static Bulkhead from(URL url, String name) {
+        String threadPool = url.getParameter(THREADPOOL_KEY, ThreadPools.FIXED);
+        Compartment serviceCompartment = null;
+        if (url.getParameter(THREADS_KEY) != null) {
+            serviceCompartment = newCompartment(url, name, "", threadPool);
+        }
+
+        Map<String, Compartment> methodCompartments = new HashMap<>();
+        String suffix = "." + THREADS_KEY;
+        for (String key : url.getParameters().keySet()) {
+            if (key.endsWith(suffix)) {
+                String method = key.substring(0, key.length() - suffix.length());
+                methodCompartments.put(method, newCompartment(url, name + "-" + method, method + ".", threadPool));
+            }
+        }
+
+        if (serviceCompartment == null && methodCompartments.isEmpty()) {
+            return null;
+        }
+        return new Bulkhead(serviceCompartment, methodCompartments);
+    }
+
+    /**
+     * 获取方法对应的隔离舱：方法级优先，其次服务级，均未配置时返回 null
+     */
+    public Compartment compartmentFor(String methodName) {
+        Compartment compartment = methodCompartments.get(methodName);
+        return compartment != null ? compartment : serviceCompartment;
+    }
+
+    public void shutdown() {
+        if (serviceCompartment != null) {
+            serviceCompartment.executor.shutdown();
+        }
+        methodCompartments.values().forEach(compartment -> compartment.executor.shutdown());
+    }
+
+    private static Compartment newCompartment(URL url, String name, String prefix, String threadPool) {
+        int threads = url.getParameter(prefix + THREADS_KEY, ThreadPools.DEFAULT_THREADS);
+        int queues = url.getParameter(prefix + QUEUES_KEY, ThreadPools.DEFAULT_QUEUES);
+        ExecutorService executor = ThreadPools.newExecutor("matrix-bulkhead-" + name, threadPool, threads, queues);
+        return new Compartment(executor, new Semaphore(Math.max(1, threads + Math.max(0, queues))));
+    }
+
+    /**
+     * 一个隔离舱：执行器加在途调用许可
+     */
+    public static final class Compartment {
+
+        private final ExecutorService executor;
+        private final Semaphore permits;
+
+        private Compartment(ExecutorService executor, Semaphore permits) {
+            this.executor = executor;
+            this.permits = permits;
+        }
+
+        /**
+         * 占用一个在途许可，已满时立即返回 false
+         */
+        public boolean tryAcquire() {
+            return permits.tryAcquire();
+        }
+
+        /**
+         * 归还许可，须在调用结果（包括异步结果）完成后调用
+         */
+        public void release() {
+            permits.release();
+        }
+
+        public void execute(Runnable task) {
+            executor.execute(task);
+        }
+    }
+}
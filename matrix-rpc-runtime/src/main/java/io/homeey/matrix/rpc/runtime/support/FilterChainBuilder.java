@@ -10,6 +10,11 @@ import io.homeey.matrix.rpc.spi.ExtensionLoader;
 
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
 
 public class FilterChainBuilder {
 
@@ -49,5 +54,41 @@ public class FilterChainBuilder {
         public Result invoke(Invocation invocation) throws RpcException {
             return filter.invoke(invoker, invocation);
         }
+
+        @Override
+        public CompletionStage<Result> invokeAsync(Invocation invocation) {
+            CompletionStage<Result> stage;
+            try {
+                stage = filter.invokeAsync(invoker, invocation);
+            } catch (Throwable t) {
+                stage = CompletableFuture.failedFuture(t);
+            }
+            // 调用完成时回调过滤器，不阻塞任何线程
+            return stage.handle((result, error) -> {
+                if (error != null) {
+                    Throwable cause = unwrap(error);
+                    filter.onError(cause, invoker, invocation);
+                    throw new CompletionException(cause);
+                }
+                return filter.onResponse(result, invoker, invocation);
+            });
+        }
+
+        /**
+         * 流式调用的结果是逐个到达的元素而非单个 Result，Consumer 端过滤器不参与，直接透传
+         */
+        @Override
+        public Flow.Publisher<Object> invokeStream(Invocation invocation) {
+            return invoker.invokeStream(invocation);
+        }
+
+        private static Throwable unwrap(Throwable error) {
+            Throwable cause = error;
+            while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                    && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            return cause;
+        }
     }
 }
\ No newline at end of file
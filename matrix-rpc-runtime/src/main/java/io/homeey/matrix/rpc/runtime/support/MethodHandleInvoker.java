@@ -0,0 +1,142 @@
+package io.homeey.matrix.rpc.runtime.support;
+
+import io.homeey.matrix.rpc.common.Result;
+import io.homeey.matrix.rpc.common.RpcException;
+import io.homeey.matrix.rpc.core.Invocation;
+import io.homeey.matrix.rpc.core.Invoker;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * 基于 MethodHandle 的服务提供者 Invoker
+ * <p>
+ * 导出时为接口的每个方法生成一个绑定到服务实现的 MethodHandle，并统一适配为 {@code (Object[]) -> Object}，
+ * 调用时按方法名和参数类型取出后以 invokeExact 调用：不再逐次查找 Method，也没有反射的访问检查和参数包装。
+ * 业务方法抛出的异常原样作为调用结果，不再经过 InvocationTargetException 包装。
+ * <p>
+ * 服务方法返回 CompletableFuture / CompletionStage 时，异步调用路径在其完成后才产出结果，
+ * 不占用 IO 线程或业务线程等待慢速 IO
+ *
+ * @param <T> 服务接口类型
+ */
+public final class MethodHandleInvoker<T> implements Invoker<T> {
+
+    private static final MethodType GENERIC_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    private final Class<T> type;
+    private final Map<String, Entry[]> methods;
+
+    public MethodHandleInvoker(Class<T> type, T target) {
+        this.type = type;
+        this.methods = bind(type, target);
+    }
+
+    private static Map<String, Entry[]> bind(Class<?> type, Object target) {
+        Map<String, Entry[]> methods = new HashMap<>();
+        for (Method method : type.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+            Entry entry = new Entry(method.getParameterTypes(), adapt(method, target));
+            methods.merge(method.getName(), new Entry[]{entry}, (existing, added) -> {
+                Entry[] merged = Arrays.copyOf(existing, existing.length + 1);
+                merged[existing.length] = added[0];
+                return merged;
+            });
+        }
+        return Map.copyOf(methods);
+    }
+
+    /**
+     * 绑定接收者并展开参数数组：(T, A1..An) -> R 适配为 (Object[]) -> Object
+     */
+    private static MethodHandle adapt(Method method, Object target) {
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.publicLookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            // 非 public 接口：开放访问后再转换，转换后的 MethodHandle 调用时不再检查访问权限
+            try {
+                method.setAccessible(true);
+                handle = MethodHandles.lookup().unreflect(method);
+            } catch (RuntimeException | IllegalAccessException ex) {
+                throw new IllegalStateException("Cannot access service method: " + method, ex);
+            }
+        }
+        return handle.bindTo(target)
+                .asSpreader(Object[].class, method.getParameterCount())
+                .asType(GENERIC_TYPE);
+    }
+
+    @Override
+    public Class<T> getInterface() {
+        return type;
+    }
+
+    @Override
+    public Result invoke(Invocation invocation) {
+        try {
+            Object result = invokeTarget(invocation);
+            if (result instanceof CompletionStage<?> stage) {
+                result = stage.toCompletableFuture().join();
+            }
+            return new Result(result);
+        } catch (CompletionException e) {
+            return new Result(e.getCause() != null ? e.getCause() : e);
+        } catch (Throwable t) {
+            return new Result(t);
+        }
+    }
+
+    @Override
+    public CompletionStage<Result> invokeAsync(Invocation invocation) {
+        Object result;
+        try {
+            result = invokeTarget(invocation);
+        } catch (Throwable t) {
+            return CompletableFuture.completedFuture(new Result(t));
+        }
+        if (result instanceof CompletionStage<?> stage) {
+            return stage.handle((value, error) -> {
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error;
+                    return new Result(cause);
+                }
+                return new Result(value);
+            });
+        }
+        return CompletableFuture.completedFuture(new Result(result));
+    }
+
+    private Object invokeTarget(Invocation invocation) throws Throwable {
+        return (Object) handleFor(invocation.methodName(), invocation.parameterTypes())
+                .invokeExact(invocation.arguments());
+    }
+
+    private MethodHandle handleFor(String methodName, Class<?>[] parameterTypes) {
+        Entry[] overloads = methods.get(methodName);
+        if (overloads != null) {
+            for (Entry entry : overloads) {
+                if (Arrays.equals(entry.parameterTypes, parameterTypes)) {
+                    return entry.handle;
+                }
+            }
+        }
+        throw new RpcException("No such method: " + type.getName() + "#" + methodName
+                + Arrays.toString(parameterTypes));
+    }
+
+    private record Entry(Class<?>[] parameterTypes, MethodHandle handle) {
+    }
+}
@@ -57,6 +57,15 @@ public class ExtensionLoader<T> {
         return (T) holder.get();
     }
 
+    // 创建新的扩展实例（不缓存），用于按连接各自持有状态的扩展，如 TransportClient
+    public T newExtension(String name) {
+        try {
+            return createExtension(name);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to create extension " + name, e);
+        }
+    }
+
     // 获取自适应扩展 (动态代理)
     public T getAdaptiveExtension() {
         if (cachedAdaptiveClass == null) {
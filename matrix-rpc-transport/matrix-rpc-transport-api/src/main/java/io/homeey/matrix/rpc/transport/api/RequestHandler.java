@@ -3,6 +3,10 @@ package io.homeey.matrix.rpc.transport.api;
 import io.homeey.matrix.rpc.common.Result;
 import io.homeey.matrix.rpc.core.Invocation;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 /**
  *
  * @author jt4mrg@gmail.com
@@ -17,4 +21,27 @@ public interface RequestHandler {
      * @return 调用结果
      */
     Result handle(Invocation invocation);
+
+    /**
+     * 异步处理RPC请求，传输层在返回的 CompletionStage 完成后才写回响应
+     *
+     * @param invocation 调用信息
+     * @return 调用结果的 CompletionStage
+     */
+    default CompletionStage<Result> handleAsync(Invocation invocation) {
+        try {
+            return CompletableFuture.completedFuture(handle(invocation));
+        } catch (Throwable t) {
+            return CompletableFuture.failedFuture(t);
+        }
+    }
+
+    /**
+     * 当前导出的服务方法，传输层在连接握手时据此下发方法 ID 表
+     *
+     * @return 方法列表，空列表表示不使用方法 ID
+     */
+    default List<ServiceMethod> methods() {
+        return List.of();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package io.homeey.matrix.rpc.transport.api;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * 一个导出的服务方法，传输层在连接握手时为其分配整数 ID
+ *
+ * @param serviceName    服务接口全限定名
+ * @param methodName     方法名
+ * @param parameterTypes 参数类型，由所有使用该方法的调用共享，不可修改
+ */
+public record ServiceMethod(String serviceName, String methodName, Class<?>[] parameterTypes) {
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ServiceMethod other && serviceName.equals(other.serviceName)
+                && methodName.equals(other.methodName) && Arrays.equals(parameterTypes, other.parameterTypes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(serviceName, methodName, Arrays.hashCode(parameterTypes));
+    }
+}
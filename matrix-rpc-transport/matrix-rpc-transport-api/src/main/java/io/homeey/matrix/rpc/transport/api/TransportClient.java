@@ -1,11 +1,16 @@
 package io.homeey.matrix.rpc.transport.api;
 
 import io.homeey.matrix.rpc.common.Result;
+import io.homeey.matrix.rpc.common.RpcException;
 import io.homeey.matrix.rpc.common.URL;
 import io.homeey.matrix.rpc.core.Invocation;
 import io.homeey.matrix.rpc.spi.SPI;
 
 import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
 
 /**
  *
@@ -23,14 +28,74 @@ public interface TransportClient extends Closeable {
     void init(URL url);
 
     /**
-     * 发送调用请求并返回结果
+     * 发送调用请求并返回结果（阻塞等待）
+     * <p>
+     * 基于 {@link #sendAsync(Invocation, long)} 的同步包装，超时由传输层负责触发
      *
      * @param invocation 调用信息，包含要调用的方法和参数
-     * @param timeout 超时时间，单位毫秒
+     * @param timeout    超时时间，单位毫秒
      * @return 调用结果
      */
-    Result send(Invocation invocation, long timeout);
-    
+    default Result send(Invocation invocation, long timeout) {
+        try {
+            return sendAsync(invocation, timeout).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RpcException("Interrupted while waiting for RPC response", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RpcException rpcException) {
+                throw rpcException;
+            }
+            throw new RpcException("Failed to send RPC request", cause);
+        }
+    }
+
+    /**
+     * 异步发送调用请求
+     * <p>
+     * 调用线程不会阻塞在写出或等待响应上：响应到达时由 IO 线程完成 Future，
+     * 写失败、连接断开或超时都会以异常方式完成 Future
+     *
+     * @param invocation 调用信息，包含要调用的方法和参数
+     * @param timeout    超时时间，单位毫秒
+     * @return 调用结果的 Future
+     */
+    CompletableFuture<Result> sendAsync(Invocation invocation, long timeout);
+
+    /**
+     * 批量发送调用请求
+     * <p>
+     * 实现应在一个帧中发出全部调用，由服务端并行执行后一次性返回；
+     * 默认实现逐个异步发送后合并结果。单个调用的失败体现在对应的 Result 中
+     *
+     * @param invocations 调用列表
+     * @param timeout     整个批次的超时时间，单位毫秒
+     * @return 与调用列表一一对应的结果
+     */
+    default CompletableFuture<List<Result>> sendBatchAsync(List<Invocation> invocations, long timeout) {
+        List<CompletableFuture<Result>> futures = invocations.stream()
+                .map(invocation -> sendAsync(invocation, timeout).exceptionally(error -> new Result(error)))
+                .toList();
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> futures.stream().map(CompletableFuture::join).toList());
+    }
+
+    /**
+     * 流式调用
+     * <p>
+     * 返回的 Publisher 每被订阅一次就开启一个流，服务端方法返回的 {@link Flow.Publisher} 中的元素
+     * 按订阅者 {@code request(n)} 的数量逐批下发，两端缓冲的元素数都受订阅者请求量约束。
+     * 参数中的 {@link Flow.Publisher} 作为上行流发给服务端（双向流）。流式调用不受调用超时约束，
+     * 结束或出错通过 onComplete / onError 通知
+     *
+     * @param invocation 调用信息
+     * @return 服务端下发元素的 Publisher
+     */
+    default Flow.Publisher<Object> openStream(Invocation invocation) {
+        throw new RpcException("Streaming is not supported by transport: " + getClass().getName());
+    }
+
     /**
      * 连接传输客户端
      *
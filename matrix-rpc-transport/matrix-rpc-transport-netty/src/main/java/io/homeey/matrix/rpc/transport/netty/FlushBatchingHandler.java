@@ -0,0 +1,127 @@
+package io.homeey.matrix.rpc.transport.netty;
+
+import io.homeey.matrix.rpc.common.URL;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.concurrent.Future;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 合并 flush 的出站处理器
+ * <p>
+ * 每个请求/响应都会调用 writeAndFlush，高负载下意味着每条消息一次 write(2) 系统调用。
+ * 本处理器拦截 flush：第一次 flush 只登记一个延迟 flush 任务，之后到达的 flush 直接合并，
+ * 任务执行时一次性把期间写入的消息全部刷出。IO 线程上的写入与其他线程经由 event loop
+ * 转交过来的写入都在 event loop 中经过这里，因此同一 tick 内或多个调用线程并发发起的写入都会合并。
+ * <p>
+ * 延迟上界：
+ * <ul>
+ *   <li>{@code transport.flush.delay=0}（默认）：在当前 event loop 任务队列处理完后立即 flush</li>
+ *   <li>{@code transport.flush.delay=N}：最多等待 N 微秒</li>
+ *   <li>合并的 flush 数达到 {@code transport.flush.batch} 时立即 flush，不再等待</li>
+ * </ul>
+ * 配置示例：
+ * <pre>
+ * matrix://0.0.0.0:20880/EchoService?transport.flush.batch=64&amp;transport.flush.delay=50
+ * </pre>
+ * {@code transport.flush.batch} 未配置或为 0 时不安装本处理器，保持每条消息立即 flush
+ */
+public class FlushBatchingHandler extends ChannelDuplexHandler {
+
+    public static final String BATCH_KEY = "transport.flush.batch";
+    public static final String DELAY_KEY = "transport.flush.delay";
+
+    private final int maxBatch;
+    private final long delayMicros;
+    private final Runnable flushTask;
+
+    private ChannelHandlerContext ctx;
+    private int pendingFlushes;
+    private Future<?> scheduledFlush;
+
+    public FlushBatchingHandler(int maxBatch, long delayMicros) {
+        if (maxBatch <= 0) {
+            throw new IllegalArgumentException("maxBatch must be positive: " + maxBatch);
+        }
+        this.maxBatch = maxBatch;
+        this.delayMicros = Math.max(0, delayMicros);
+        this.flushTask = () -> {
+            scheduledFlush = null;
+            if (pendingFlushes > 0) {
+                flushNow();
+            }
+        };
+    }
+
+    /**
+     * 按 URL 参数创建，未开启时返回 null
+     */
+    public static FlushBatchingHandler from(URL url) {
+        int maxBatch = url.getParameter(BATCH_KEY, 0);
+        if (maxBatch <= 0) {
+            return null;
+        }
+        return new FlushBatchingHandler(maxBatch, url.getParameter(DELAY_KEY, 0));
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        if (++pendingFlushes >= maxBatch) {
+            flushNow();
+            return;
+        }
+        if (scheduledFlush == null) {
+            scheduledFlush = delayMicros > 0
+                    ? ctx.executor().schedule(flushTask, delayMicros, TimeUnit.MICROSECONDS)
+                    : ctx.executor().submit(flushTask);
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        // 变为不可写时尽快把已缓冲的数据交给内核，避免水位迟迟无法回落
+        if (!ctx.channel().isWritable() && pendingFlushes > 0) {
+            flushNow();
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        flushIfPending();
+        ctx.disconnect(promise);
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        flushIfPending();
+        ctx.close(promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        flushIfPending();
+    }
+
+    private void flushIfPending() {
+        if (pendingFlushes > 0) {
+            flushNow();
+        }
+    }
+
+    private void flushNow() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        pendingFlushes = 0;
+        ctx.flush();
+    }
+}
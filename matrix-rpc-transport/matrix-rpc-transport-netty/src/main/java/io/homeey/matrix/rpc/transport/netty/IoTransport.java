@@ -0,0 +1,162 @@
+package io.homeey.matrix.rpc.transport.netty;
+
+import io.homeey.matrix.rpc.common.URL;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.IoHandlerFactory;
+import io.netty.channel.MultiThreadIoEventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.netty.channel.epoll.EpollIoHandler;
+import io.netty.channel.epoll.EpollServerDomainSocketChannel;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioIoHandler;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioDomainSocketChannel;
+import io.netty.channel.socket.nio.NioServerDomainSocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.channel.uring.IoUring;
+import io.netty.channel.uring.IoUringChannelOption;
+import io.netty.channel.uring.IoUringIoHandler;
+import io.netty.channel.uring.IoUringServerSocketChannel;
+import io.netty.channel.uring.IoUringSocketChannel;
+
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Netty IO 传输实现选择
+ * <p>
+ * 通过 URL 参数 {@code transport.io} 选择 nio / epoll / io_uring，
+ * 所选原生传输在当前平台不可用（非 Linux 或缺少原生库）时自动回退到 nio。
+ * nio（JDK 16+ 的 {@link UnixDomainSocketAddress}）和 epoll 同时支持 Unix domain socket
+ * <p>
+ * 配置示例：
+ * <pre>
+ * matrix://0.0.0.0:20880/EchoService?transport.io=epoll&amp;transport.acceptors=4
+ * </pre>
+ */
+public enum IoTransport {
+
+    NIO("nio"),
+    EPOLL("epoll"),
+    IO_URING("io_uring");
+
+    public static final String IO_KEY = "transport.io";
+
+    private final String value;
+
+    IoTransport(String value) {
+        this.value = value;
+    }
+
+    /**
+     * 根据 URL 参数解析 IO 传输，不可用时回退到 nio
+     */
+    public static IoTransport from(URL url) {
+        String io = url.getParameter(IO_KEY, NIO.value);
+        for (IoTransport transport : values()) {
+            if (transport.value.equalsIgnoreCase(io)) {
+                if (transport.isAvailable()) {
+                    return transport;
+                }
+                System.err.println("[Netty] Native transport '" + io + "' is not available, fallback to nio");
+                return NIO;
+            }
+        }
+        System.err.println("[Netty] Unknown transport '" + io + "', fallback to nio");
+        return NIO;
+    }
+
+    public boolean isAvailable() {
+        try {
+            return switch (this) {
+                case NIO -> true;
+                case EPOLL -> Epoll.isAvailable();
+                case IO_URING -> IoUring.isAvailable();
+            };
+        } catch (Throwable t) {
+            // 原生传输类或依赖缺失
+            return false;
+        }
+    }
+
+    public EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+        return new MultiThreadIoEventLoopGroup(threads, threadFactory, ioHandlerFactory());
+    }
+
+    public Class<? extends SocketChannel> socketChannelClass() {
+        return switch (this) {
+            case NIO -> NioSocketChannel.class;
+            case EPOLL -> EpollSocketChannel.class;
+            case IO_URING -> IoUringSocketChannel.class;
+        };
+    }
+
+    public Class<? extends ServerSocketChannel> serverSocketChannelClass() {
+        return switch (this) {
+            case NIO -> NioServerSocketChannel.class;
+            case EPOLL -> EpollServerSocketChannel.class;
+            case IO_URING -> IoUringServerSocketChannel.class;
+        };
+    }
+
+    public boolean supportsDomainSocket() {
+        return this != IO_URING;
+    }
+
+    public Class<? extends Channel> domainSocketChannelClass() {
+        return switch (this) {
+            case NIO -> NioDomainSocketChannel.class;
+            case EPOLL -> EpollDomainSocketChannel.class;
+            case IO_URING -> throw unsupportedDomainSocket();
+        };
+    }
+
+    public Class<? extends ServerChannel> serverDomainSocketChannelClass() {
+        return switch (this) {
+            case NIO -> NioServerDomainSocketChannel.class;
+            case EPOLL -> EpollServerDomainSocketChannel.class;
+            case IO_URING -> throw unsupportedDomainSocket();
+        };
+    }
+
+    public SocketAddress domainSocketAddress(String path) {
+        return switch (this) {
+            case NIO -> UnixDomainSocketAddress.of(path);
+            case EPOLL -> new DomainSocketAddress(path);
+            case IO_URING -> throw unsupportedDomainSocket();
+        };
+    }
+
+    private UnsupportedOperationException unsupportedDomainSocket() {
+        return new UnsupportedOperationException("Unix domain socket is not supported by transport: " + value);
+    }
+
+    /**
+     * SO_REUSEPORT 选项，仅原生传输支持，nio 返回 null
+     */
+    public ChannelOption<Boolean> reusePortOption() {
+        return switch (this) {
+            case NIO -> null;
+            case EPOLL -> EpollChannelOption.SO_REUSEPORT;
+            case IO_URING -> IoUringChannelOption.SO_REUSEPORT;
+        };
+    }
+
+    private IoHandlerFactory ioHandlerFactory() {
+        return switch (this) {
+            case NIO -> NioIoHandler.newFactory();
+            case EPOLL -> EpollIoHandler.newFactory();
+            case IO_URING -> IoUringIoHandler.newFactory();
+        };
+    }
+}
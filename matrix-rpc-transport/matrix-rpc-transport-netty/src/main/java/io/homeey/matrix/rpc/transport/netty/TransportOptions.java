@@ -0,0 +1,103 @@
+package io.homeey.matrix.rpc.transport.netty;
+
+import io.homeey.matrix.rpc.common.URL;
+import io.netty.channel.WriteBufferWaterMark;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 客户端与服务端共用的传输层参数
+ * <p>
+ * 配置示例：
+ * <pre>
+ * transport.write.low=32768&amp;transport.write.high=65536   # 写缓冲低/高水位（字节）
+ * transport.inflight=4096                                 # 每个连接的最大在途请求数
+ * transport.overload.wait=100                             # 过载时最多等待的毫秒数，0 表示立即失败
+ * transport.method.id=true                                # 连接建立后握手获取方法 ID 表，请求只携带整数 ID
+ * heartbeat=5000                                          # 心跳间隔（毫秒），0 关闭心跳与空闲检测
+ * heartbeat.timeout=15000                                 # 超过该时长未收到任何数据即关闭连接
+ * unix.path=/var/run/matrix/echo.sock                     # 服务端额外监听的 Unix domain socket，随服务 URL 发布
+ * </pre>
+ */
+public final class TransportOptions {
+
+    public static final String WRITE_LOW_KEY = "transport.write.low";
+    public static final String WRITE_HIGH_KEY = "transport.write.high";
+    public static final String INFLIGHT_KEY = "transport.inflight";
+    public static final String OVERLOAD_WAIT_KEY = "transport.overload.wait";
+    public static final String METHOD_ID_KEY = "transport.method.id";
+
+    public static final String HEARTBEAT_KEY = "heartbeat";
+    public static final String HEARTBEAT_TIMEOUT_KEY = "heartbeat.timeout";
+
+    public static final String UNIX_PROTOCOL = "unix";
+    public static final String UNIX_PATH_KEY = "unix.path";
+
+    public static final int DEFAULT_INFLIGHT = 4096;
+    /**
+     * 写缓冲短暂越过高水位很常见（一次大请求或对端一次 GC），默认给予短暂等待而不是立即失败
+     */
+    public static final int DEFAULT_OVERLOAD_WAIT = 100;
+    public static final int DEFAULT_HEARTBEAT = 5000;
+
+    private TransportOptions() {
+    }
+
+    /**
+     * 写缓冲水位：出站缓冲超过高水位时 channel 变为不可写，回落到低水位后恢复
+     */
+    public static WriteBufferWaterMark writeBufferWaterMark(URL url) {
+        int low = url.getParameter(WRITE_LOW_KEY, WriteBufferWaterMark.DEFAULT.low());
+        int high = url.getParameter(WRITE_HIGH_KEY, WriteBufferWaterMark.DEFAULT.high());
+        return new WriteBufferWaterMark(Math.min(low, high), Math.max(low, high));
+    }
+
+    /**
+     * 心跳间隔（毫秒），小于等于 0 表示关闭
+     */
+    public static int heartbeatInterval(URL url) {
+        return url.getParameter(HEARTBEAT_KEY, DEFAULT_HEARTBEAT);
+    }
+
+    /**
+     * 空闲超时（毫秒），默认三倍心跳间隔；心跳关闭时返回 0
+     */
+    public static int heartbeatTimeout(URL url) {
+        int heartbeat = heartbeatInterval(url);
+        if (heartbeat <= 0) {
+            return 0;
+        }
+        return Math.max(heartbeat, url.getParameter(HEARTBEAT_TIMEOUT_KEY, heartbeat * 3));
+    }
+
+    /**
+     * 客户端应使用的 Unix domain socket 路径，不使用时返回 null
+     * <p>
+     * {@code unix:///path/to.sock} 形式的 URL 直接使用其路径；TCP 地址上携带 {@code unix.path} 时，
+     * 仅当提供者地址属于本机且 socket 文件存在才使用，跨主机调用保持走 TCP
+     */
+    public static String domainSocketPath(URL url) {
+        if (UNIX_PROTOCOL.equals(url.getProtocol())) {
+            return "/" + url.getPath();
+        }
+        String path = url.getParameter(UNIX_PATH_KEY);
+        if (path == null || !Files.exists(Path.of(path)) || !isLocalHost(url.getHost())) {
+            return null;
+        }
+        return path;
+    }
+
+    private static boolean isLocalHost(String host) {
+        try {
+            InetAddress address = InetAddress.getByName(host);
+            return address.isLoopbackAddress() || address.isAnyLocalAddress()
+                    || NetworkInterface.getByInetAddress(address) != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
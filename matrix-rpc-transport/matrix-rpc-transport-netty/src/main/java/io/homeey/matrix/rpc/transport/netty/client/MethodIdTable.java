@@ -0,0 +1,63 @@
+package io.homeey.matrix.rpc.transport.netty.client;
+
+import io.homeey.matrix.rpc.codec.protobuf.RpcProto;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 连接握手时服务端下发的方法 ID 表
+ * <p>
+ * 按服务名、方法名两级查找，重载方法再逐个比较参数类型名（{@link Class#getName()} 已缓存），
+ * 查找过程不拼接字符串。建立后只读，可被多个调用线程并发访问
+ */
+final class MethodIdTable {
+
+    private final Map<String, Map<String, List<Entry>>> services = new HashMap<>();
+
+    MethodIdTable(List<RpcProto.MethodEntry> methods) {
+        for (int i = 0; i < methods.size(); i++) {
+            RpcProto.MethodEntry method = methods.get(i);
+            services.computeIfAbsent(method.getServiceName(), k -> new HashMap<>())
+                    .computeIfAbsent(method.getMethodName(), k -> new ArrayList<>(1))
+                    .add(new Entry(method.getParameterTypesList().toArray(String[]::new), i + 1));
+        }
+    }
+
+    /**
+     * @return 方法 ID，表中没有该方法（如握手后才导出的服务）时返回 0
+     */
+    int idOf(String serviceName, String methodName, Class<?>[] parameterTypes) {
+        Map<String, List<Entry>> methods = services.get(serviceName);
+        if (methods == null) {
+            return 0;
+        }
+        List<Entry> overloads = methods.get(methodName);
+        if (overloads == null) {
+            return 0;
+        }
+        for (Entry entry : overloads) {
+            if (entry.matches(parameterTypes)) {
+                return entry.id();
+            }
+        }
+        return 0;
+    }
+
+    private record Entry(String[] parameterTypes, int id) {
+
+        boolean matches(Class<?>[] types) {
+            if (types.length != parameterTypes.length) {
+                return false;
+            }
+            for (int i = 0; i < types.length; i++) {
+                if (!types[i].getName().equals(parameterTypes[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,536 @@
+package io.homeey.matrix.rpc.transport.netty.client;
+
+import com.google.protobuf.UnsafeByteOperations;
+import io.homeey.matrix.rpc.codec.api.Codec;
+import io.homeey.matrix.rpc.codec.protobuf.RpcProto;
+import io.homeey.matrix.rpc.common.Result;
+import io.homeey.matrix.rpc.common.RpcException;
+import io.homeey.matrix.rpc.transport.netty.codec.BlobFrame;
+import io.homeey.matrix.rpc.transport.netty.codec.CompactFrame;
+import io.homeey.matrix.rpc.transport.netty.codec.PayloadCompression;
+import io.homeey.matrix.rpc.transport.netty.codec.RpcFrame;
+import io.homeey.matrix.rpc.transport.netty.stream.InboundStream;
+import io.homeey.matrix.rpc.transport.netty.stream.OutboundStream;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.AttributeKey;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单条 TCP 连接及其在途请求
+ * <p>
+ * 每个连接独立维护自己的在途请求表，连接断开时只失败该连接上的请求，
+ * 不影响同一地址下其他健康连接。
+ * 在途请求保存在以原始 long 为键的 {@link PendingRequestTable} 中，
+ * 超时由进程级共享的时间轮驱动，无需任何线程阻塞等待。
+ * <p>
+ * 背压：在途请求数受 {@code transport.inflight} 限制，channel 写缓冲超过高水位时不可写；
+ * 两者任一达到上限时，调用方最多等待 {@code transport.overload.wait} 毫秒（默认 100，配置为 0 时立即失败），
+ * 仍未恢复则以 CLIENT_OVERLOADED 快速失败，避免出站缓冲和在途请求表无限增长。
+ * IO 线程上从不等待，也不检查可写性，只受在途上限约束，写缓冲的增长由在途上限间接限制
+ * <p>
+ * 流式调用按 requestId 与普通请求复用同一连接，流控由双方互相授予的 credit 完成，
+ * 不占用在途许可也不受调用超时约束；连接断开时所有流以异常结束
+ * <p>
+ * 开启 {@code transport.method.id} 或紧凑帧时，连接建立后先以 requestId 0 发送握手帧，
+ * 收到方法表之前的请求仍携带完整的服务名、方法名和参数类型。
+ * 连接总是以 protobuf 帧开始，只有握手响应确认服务端能识别 {@link CompactFrame} 后才切换，
+ * 不支持握手的旧版服务端始终使用 protobuf 帧
+ */
+class NettyConnection {
+
+    static final AttributeKey<NettyConnection> CONNECTION_KEY = AttributeKey.valueOf("matrix.connection");
+
+    private static final RpcProto.RpcRequest HEARTBEAT_REQUEST = RpcProto.RpcRequest.newBuilder()
+            .setHeartbeat(true)
+            .build();
+
+
+    private static final Timer TIMEOUT_TIMER = new HashedWheelTimer(
+            new DefaultThreadFactory("matrix-rpc-timeout", true), 10, TimeUnit.MILLISECONDS);
+
+    private final Channel channel;
+    private final Codec codec;
+    private final PendingRequestTable<PendingCall> pendingRequests = new PendingRequestTable<>();
+    private final Map<Long, StreamCall> streams = new ConcurrentHashMap<>();
+    private final int maxInflight;
+    private final Semaphore inflightPermits;
+    private final long overloadWaitMillis;
+    private final Object writabilityLock = new Object();
+    private final int maxMissedHeartbeats;
+    private final boolean methodIdHandshake;
+    private final boolean compactFrame;
+    private final int maxPayload;
+    private volatile MethodIdTable methodIds;
+
+    NettyConnection(Channel channel, Codec codec, int maxInflight, long overloadWaitMillis, int maxMissedHeartbeats,
+                    boolean methodIdHandshake, boolean compactFrame, int maxPayload) {
+        this.channel = channel;
+        this.codec = codec;
+        this.maxInflight = maxInflight;
+        this.inflightPermits = new Semaphore(maxInflight);
+        this.overloadWaitMillis = overloadWaitMillis;
+        this.maxMissedHeartbeats = maxMissedHeartbeats;
+        this.methodIdHandshake = methodIdHandshake;
+        this.compactFrame = compactFrame;
+        this.maxPayload = maxPayload;
+    }
+
+    Channel channel() {
+        return channel;
+    }
+
+    boolean isActive() {
+        return channel.isActive();
+    }
+
+    boolean isWritable() {
+        return channel.isWritable();
+    }
+
+    /**
+     * 握手得到的方法 ID
+     *
+     * @return 尚未完成握手或服务端没有该方法时返回 0，此时请求需携带完整的方法信息
+     */
+    int methodId(String serviceName, String methodName, Class<?>[] parameterTypes) {
+        MethodIdTable table = this.methodIds;
+        return table == null ? 0 : table.idOf(serviceName, methodName, parameterTypes);
+    }
+
+    /**
+     * 当前连接上等待响应的请求数，用于最少在途请求选择
+     */
+    int pendingCount() {
+        return pendingRequests.size();
+    }
+
+    /**
+     * @param request RpcRequest，携带大对象时为 {@link BlobFrame}
+     */
+    CompletableFuture<Result> send(long requestId, Object request, long timeoutMillis) {
+        // 1. 背压：在途请求数和写缓冲都未超限时才发送，否则有限等待后快速失败
+        String overloaded = acquire();
+        if (overloaded != null) {
+            return CompletableFuture.failedFuture(new RpcException(RpcException.CLIENT_OVERLOADED,
+                    "Connection overloaded (" + overloaded + "): " + channel.remoteAddress()));
+        }
+        PendingCall call = new PendingCall(requestId, timeoutMillis);
+
+        // 2. 登记在途请求，超时由时间轮触发，不占用调用线程
+        pendingRequests.put(requestId, call);
+        call.timeout = TIMEOUT_TIMER.newTimeout(call, timeoutMillis, TimeUnit.MILLISECONDS);
+
+        // 3. 异步写出，写失败直接转为失败的 Future
+        channel.writeAndFlush(request).addListener((ChannelFutureListener) f -> {
+            if (!f.isSuccess()) {
+                PendingCall failed = pendingRequests.remove(requestId);
+                if (failed != null) {
+                    failed.fail(new RpcException("Failed to send RPC request", f.cause()));
+                }
+            }
+        });
+        return call.future;
+    }
+
+    /**
+     * 开启流式调用：先写出 OPEN 帧再完成订阅，订阅者的 request 会转为 CREDIT 帧紧随其后发出
+     *
+     * @param upstream 双向流的上行 Publisher，仅服务端流时为 null
+     */
+    void openStream(long requestId, RpcProto.RpcRequest request, Flow.Publisher<?> upstream,
+                    Flow.Subscriber<? super Object> subscriber) {
+        StreamCall call = new StreamCall(requestId, upstream != null);
+        streams.put(requestId, call);
+        channel.writeAndFlush(request).addListener((ChannelFutureListener) f -> {
+            if (!f.isSuccess()) {
+                call.finish(new RpcException("Failed to open RPC stream", f.cause()));
+            }
+        });
+        call.inbound.subscribe(subscriber);
+        if (upstream != null) {
+            upstream.subscribe(call.outbound);
+        }
+    }
+
+    void close() {
+        channel.close();
+        failPendingRequests(new RpcException("Connection closed"));
+    }
+
+    /**
+     * 获取一个在途许可并确认 channel 可写
+     *
+     * @return null 表示成功，否则为过载原因
+     */
+    private String acquire() {
+        // IO 线程上等待会阻塞自身的写出和响应处理，只能快速失败；
+        // 可写性也只有 IO 线程能改变，在其上检查只会把短暂越过高水位误判为过载
+        boolean ioThread = channel.eventLoop().inEventLoop();
+        long waitNanos = ioThread ? 0 : TimeUnit.MILLISECONDS.toNanos(overloadWaitMillis);
+        long deadline = System.nanoTime() + waitNanos;
+        try {
+            if (!inflightPermits.tryAcquire() && (waitNanos <= 0
+                    || !inflightPermits.tryAcquire(waitNanos, TimeUnit.NANOSECONDS))) {
+                return "max in-flight " + maxInflight;
+            }
+            if (!ioThread && !awaitWritable(deadline, waitNanos > 0)) {
+                inflightPermits.release();
+                return "write buffer full";
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "interrupted";
+        }
+    }
+
+    private boolean awaitWritable(long deadline, boolean wait) throws InterruptedException {
+        if (channel.isWritable() || !wait) {
+            return channel.isWritable();
+        }
+        synchronized (writabilityLock) {
+            while (!channel.isWritable() && channel.isActive()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(writabilityLock, remaining);
+            }
+        }
+        return channel.isWritable();
+    }
+
+    private void signalWritability() {
+        synchronized (writabilityLock) {
+            writabilityLock.notifyAll();
+        }
+    }
+
+    private void failPendingRequests(Throwable cause) {
+        for (PendingCall call : pendingRequests.removeAll()) {
+            call.fail(cause);
+        }
+        for (StreamCall call : List.copyOf(streams.values())) {
+            call.finish(cause);
+        }
+    }
+
+    private void handleStreamFrame(RpcProto.RpcResponse response) {
+        StreamCall call = streams.get(response.getRequestId());
+        if (call == null) {
+            // 流已结束或已取消，丢弃迟到的帧
+            return;
+        }
+        switch (response.getStream()) {
+            case DATA -> {
+                Object item;
+                try {
+                    item = codec.decode(
+                            PayloadCompression.payload(response.getResult(), response.getCompression(), maxPayload), Object.class);
+                } catch (Exception e) {
+                    call.cancel();
+                    call.inbound.onError(new RpcException("Failed to decode RPC stream item", e));
+                    return;
+                }
+                call.inbound.onData(item);
+            }
+            case COMPLETE -> call.finish(null);
+            case ERROR -> {
+                Throwable error = buildResult(response).getException();
+                call.finish(error != null ? error : new RpcException("RPC stream failed"));
+            }
+            case CREDIT -> {
+                if (call.outbound != null) {
+                    call.outbound.addCredit(response.getCredit());
+                }
+            }
+            case CANCEL -> {
+                if (call.outbound != null) {
+                    call.outbound.cancel();
+                }
+            }
+            default -> System.err.println("[Netty] Unexpected stream frame: " + response.getStream());
+        }
+    }
+
+    private void writeStreamFrame(RpcProto.RpcRequest.Builder frame, StreamCall call) {
+        channel.writeAndFlush(frame.build()).addListener((ChannelFutureListener) f -> {
+            if (!f.isSuccess()) {
+                call.finish(new RpcException("Failed to write RPC stream frame", f.cause()));
+            }
+        });
+    }
+
+    private Result buildResult(RpcProto.RpcResponse response) {
+        return buildResult(response, List.of());
+    }
+
+    private Result buildResult(RpcProto.RpcResponse response, List<Object> blobs) {
+        // 批量调用：结果值为各子调用的 Result 列表，单个子结果解码失败不影响其他结果
+        if (response.getBatchCount() > 0) {
+            List<Result> results = new ArrayList<>(response.getBatchCount());
+            for (RpcProto.RpcResponse entry : response.getBatchList()) {
+                try {
+                    results.add(buildResult(entry));
+                } catch (Exception e) {
+                    results.add(new Result(new RpcException("Failed to decode RPC response", e)));
+                }
+            }
+            return new Result(results);
+        }
+        // 带错误码的失败还原为 RpcException，保留是否可重试等语义
+        if (response.getStatus() != RpcException.UNKNOWN) {
+            return new Result(new RpcException(response.getStatus(), response.getException()));
+        }
+        // protobuf中string类型默认是空字符串，不是null
+        if (response.getException() != null && !response.getException().isEmpty()) {
+            return new Result(new RuntimeException(response.getException()));
+        }
+        // 大对象返回值已由解码器落到临时文件，不经过 Codec
+        if (response.getBlobsCount() > 0) {
+            return new Result(blobs.get(0));
+        }
+        // 反序列化返回值 - 未压缩时直接读取帧缓冲区的切片，必须在帧释放前完成
+        Object value = codec.decode(
+                PayloadCompression.payload(response.getResult(), response.getCompression(), maxPayload), Object.class);
+        return new Result(value);
+    }
+
+    /**
+     * 在途请求：同时作为时间轮的超时任务，避免额外分配。
+     * 只有从在途请求表中成功移除它的一方才会完成它，因此在途许可恰好归还一次
+     */
+    private final class PendingCall implements TimerTask {
+        private final long requestId;
+        private final long timeoutMillis;
+        private final CompletableFuture<Result> future = new CompletableFuture<>();
+        private volatile Timeout timeout;
+
+        PendingCall(long requestId, long timeoutMillis) {
+            this.requestId = requestId;
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        @Override
+        public void run(Timeout timeout) {
+            if (pendingRequests.remove(requestId) != null) {
+                fail(new RpcException("Request timeout after " + timeoutMillis + "ms"));
+            }
+        }
+
+        void complete(Result result) {
+            cancelTimeout();
+            inflightPermits.release();
+            future.complete(result);
+        }
+
+        void fail(Throwable cause) {
+            cancelTimeout();
+            inflightPermits.release();
+            future.completeExceptionally(cause);
+        }
+
+        private void cancelTimeout() {
+            Timeout scheduled = this.timeout;
+            if (scheduled != null) {
+                scheduled.cancel();
+            }
+        }
+    }
+
+    /**
+     * 进行中的流式调用：下行方向交给本地订阅者，双向流时上行方向订阅调用方传入的 Publisher
+     */
+    private final class StreamCall {
+        private final long requestId;
+        private final InboundStream inbound;
+        private final OutboundStream outbound;
+
+        StreamCall(long requestId, boolean bidirectional) {
+            this.requestId = requestId;
+            this.inbound = new InboundStream(channel.eventLoop(),
+                    credit -> writeStreamFrame(frame(RpcProto.StreamFrame.CREDIT).setCredit(credit), this),
+                    this::cancel);
+            this.outbound = bidirectional ? new OutboundStream(new UpstreamSink()) : null;
+        }
+
+        /**
+         * 本地订阅者取消：通知服务端停止发送，并停止上行
+         */
+        void cancel() {
+            if (streams.remove(requestId, this)) {
+                channel.writeAndFlush(frame(RpcProto.StreamFrame.CANCEL).build());
+                if (outbound != null) {
+                    outbound.cancel();
+                }
+            }
+        }
+
+        /**
+         * 服务端结束、出错或连接断开，error 为 null 表示正常结束
+         */
+        void finish(Throwable error) {
+            if (!streams.remove(requestId, this)) {
+                return;
+            }
+            if (outbound != null) {
+                outbound.cancel();
+            }
+            if (error == null) {
+                inbound.onComplete();
+            } else {
+                inbound.onError(error);
+            }
+        }
+
+        private RpcProto.RpcRequest.Builder frame(RpcProto.StreamFrame type) {
+            return RpcProto.RpcRequest.newBuilder()
+                    .setRequestId(requestId)
+                    .setStream(type);
+        }
+
+        /**
+         * 双向流的上行方向：元素编码后作为 DATA 帧的唯一参数发出
+         */
+        private final class UpstreamSink implements OutboundStream.Sink {
+            @Override
+            public void next(Object item) {
+                RpcProto.RpcRequest.Builder data;
+                try {
+                    data = frame(RpcProto.StreamFrame.DATA)
+                            .addArguments(UnsafeByteOperations.unsafeWrap(codec.encode(item)));
+                } catch (Exception e) {
+                    outbound.cancel();
+                    error(e);
+                    return;
+                }
+                writeStreamFrame(data, StreamCall.this);
+            }
+
+            @Override
+            public void complete() {
+                writeStreamFrame(frame(RpcProto.StreamFrame.COMPLETE), StreamCall.this);
+            }
+
+            @Override
+            public void error(Throwable error) {
+                writeStreamFrame(frame(RpcProto.StreamFrame.ERROR)
+                        .setException(String.valueOf(error.getMessage())), StreamCall.this);
+            }
+        }
+    }
+
+    // =============== 内部处理器 ===============
+
+    class ResponseHandler extends SimpleChannelInboundHandler<RpcFrame<RpcProto.RpcResponse>> {
+        /**
+         * 连续未收到任何数据的心跳周期数，仅在 IO 线程访问
+         */
+        private int missedHeartbeats;
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, RpcFrame<RpcProto.RpcResponse> frame) {
+            RpcProto.RpcResponse response = frame.message();
+            missedHeartbeats = 0;
+            if (response.getHeartbeat()) {
+                return;
+            }
+            if (response.getHandshake()) {
+                if (methodIdHandshake) {
+                    methodIds = new MethodIdTable(response.getMethodsList());
+                }
+                // 握手响应之后发出的普通调用和心跳改用紧凑帧，此前已写出的 protobuf 帧服务端同样能识别
+                if (compactFrame && response.getCompactFrame()) {
+                    CompactFrame.enable(ctx.channel());
+                }
+                return;
+            }
+            if (response.getRequestId() == 0) {
+                // 不支持握手的旧版服务端把握手帧当作普通请求应答，忽略即可，后续请求继续携带完整方法信息
+                return;
+            }
+            if (response.getStream() != RpcProto.StreamFrame.UNARY) {
+                handleStreamFrame(response);
+                return;
+            }
+            PendingCall call = pendingRequests.remove(response.getRequestId());
+            if (call == null) {
+                // 已超时的调用不会再取走大对象返回值，删除其临时文件
+                RpcFrame.discardBlobs(frame.blobs());
+                System.err.println("[Netty] No pending request for ID: " + response.getRequestId());
+                return;
+            }
+            try {
+                call.complete(buildResult(response, frame.blobs()));
+            } catch (Exception e) {
+                RpcFrame.discardBlobs(frame.blobs());
+                call.fail(new RpcException("Failed to decode RPC response", e));
+            }
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            if (methodIdHandshake || compactFrame) {
+                ctx.writeAndFlush(RpcProto.RpcRequest.newBuilder()
+                        .setHandshake(true)
+                        .setCompactFrame(compactFrame)
+                        .build());
+            }
+            super.channelActive(ctx);
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+            if (evt instanceof IdleStateEvent) {
+                if (++missedHeartbeats >= maxMissedHeartbeats) {
+                    // 对端失联：关闭连接，由客户端在后台重连
+                    System.err.println("[Netty] Heartbeat timeout, closing connection: " + ctx.channel().remoteAddress());
+                    ctx.close();
+                } else {
+                    ctx.writeAndFlush(HEARTBEAT_REQUEST);
+                }
+                return;
+            }
+            super.userEventTriggered(ctx, evt);
+        }
+
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+            if (ctx.channel().isWritable()) {
+                signalWritability();
+            }
+            super.channelWritabilityChanged(ctx);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            failPendingRequests(new RpcException("Connection closed: " + ctx.channel().remoteAddress()));
+            signalWritability();
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            System.err.println("[Netty] Client exception: " + cause.getMessage());
+            failPendingRequests(cause);
+            ctx.close();
+        }
+    }
+}
@@ -1,39 +1,71 @@
 package io.homeey.matrix.rpc.transport.netty.client;
 
-import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import io.homeey.matrix.rpc.codec.api.Codec;
 import io.homeey.matrix.rpc.codec.protobuf.RpcProto;
 import io.homeey.matrix.rpc.common.Result;
+import io.homeey.matrix.rpc.common.RpcException;
 import io.homeey.matrix.rpc.common.URL;
 import io.homeey.matrix.rpc.core.Invocation;
 import io.homeey.matrix.rpc.spi.Activate;
 import io.homeey.matrix.rpc.spi.ExtensionLoader;
 import io.homeey.matrix.rpc.transport.api.TransportClient;
+import io.homeey.matrix.rpc.transport.netty.FlushBatchingHandler;
+import io.homeey.matrix.rpc.transport.netty.IoTransport;
+import io.homeey.matrix.rpc.transport.netty.TransportOptions;
+import io.homeey.matrix.rpc.transport.netty.codec.BlobFrame;
+import io.homeey.matrix.rpc.transport.netty.codec.BlobFrameEncoder;
+import io.homeey.matrix.rpc.transport.netty.codec.CompactFrame;
+import io.homeey.matrix.rpc.transport.netty.codec.PayloadCompression;
+import io.homeey.matrix.rpc.transport.netty.codec.RpcFrameDecoder;
+import io.homeey.matrix.rpc.transport.netty.codec.RpcFrameEncoder;
 import io.netty.bootstrap.Bootstrap;
-import io.netty.buffer.ByteBuf;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
-import io.netty.handler.codec.ByteToMessageDecoder;
-import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.handler.timeout.IdleStateHandler;
 
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * 基于 Netty 的传输客户端
+ * <p>
+ * 每个服务端地址维护一个连接池（URL 参数 {@code connections}，默认 1），
+ * 请求被放到在途请求最少的连接上；断开的连接在后台以带抖动的指数退避重建，不影响健康连接上的在途调用。
+ * 空闲时发送心跳，连续多个心跳周期收不到任何数据即判定对端失联并关闭连接（随后触发重连）。
+ * IO 线程来自进程级共享的 {@link SharedEventLoopGroup}，IO 传输由 {@link IoTransport} 决定；
+ * 本机提供者发布了 {@code unix.path} 或地址为 {@code unix://} 时改用 Unix domain socket。
+ * 写缓冲水位、在途请求上限和过载等待时间见 {@link TransportOptions}。
+ * 流式调用见 {@link #openStream(Invocation)}。
+ * {@code Path} / {@code ByteBuffer} 参数和返回值作为大对象跟随帧以原始字节传输，见 {@link BlobFrame}。
+ * 普通调用和心跳默认在握手确认服务端支持后改用 {@link CompactFrame} 编码
+ */
 @Activate(order = 100)
 public class NettyTransportClient implements TransportClient {
+    private static final int DEFAULT_CONNECTIONS = 1;
+    private static final long RECONNECT_BASE_DELAY_MILLIS = 100;
+    private static final long RECONNECT_MAX_DELAY_MILLIS = 10_000;
+    private static final byte[] EMPTY_PAYLOAD = new byte[0];
+
     private URL url;
+    private IoTransport ioTransport;
     private EventLoopGroup group;
     private Bootstrap bootstrap;
-    private Channel channel;
-    private final ConcurrentHashMap<Long, CompletableFuture<RpcProto.RpcResponse>> pendingRequests
-            = new ConcurrentHashMap<>();
+    private SocketAddress remoteAddress;
+    private PayloadCompression compression;
+    private AtomicReferenceArray<NettyConnection> connections;
     private final AtomicLong requestIdGenerator = new AtomicLong(0);
+    private final AtomicInteger selectIndex = new AtomicInteger(0);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
     private final Codec codec; // 使用 SPI 获取序列化器
 
     /**
@@ -56,164 +88,341 @@ public class NettyTransportClient implements TransportClient {
     @Override
     public void init(URL url) {
         this.url = url;
-        this.group = new NioEventLoopGroup();
+        this.connections = new AtomicReferenceArray<>(Math.max(1, url.getParameter("connections", DEFAULT_CONNECTIONS)));
+        this.ioTransport = IoTransport.from(url);
+        this.compression = PayloadCompression.from(url);
+        this.group = SharedEventLoopGroup.acquire(ioTransport);
         this.bootstrap = new Bootstrap();
+        int maxInflight = Math.max(1, url.getParameter(TransportOptions.INFLIGHT_KEY, TransportOptions.DEFAULT_INFLIGHT));
+        long overloadWaitMillis = Math.max(0, url.getParameter(TransportOptions.OVERLOAD_WAIT_KEY,
+                TransportOptions.DEFAULT_OVERLOAD_WAIT));
+        int heartbeat = TransportOptions.heartbeatInterval(url);
+        int maxMissedHeartbeats = heartbeat > 0 ? Math.max(2, TransportOptions.heartbeatTimeout(url) / heartbeat) : 0;
+        // 默认在握手中协商紧凑帧，配置 transport.frame=protobuf 时始终使用 protobuf 帧
+        boolean compactFrame = CompactFrame.isCompact(url);
+        boolean methodIdHandshake = url.getParameter(TransportOptions.METHOD_ID_KEY, true);
+        int maxPayload = url.getParameter(RpcFrameDecoder.PAYLOAD_KEY, RpcFrameDecoder.DEFAULT_PAYLOAD);
+
+        // 提供者在本机且发布了 domain socket 时绕过 TCP 协议栈
+        String unixPath = TransportOptions.domainSocketPath(url);
+        if (unixPath != null && ioTransport.supportsDomainSocket()) {
+            this.remoteAddress = ioTransport.domainSocketAddress(unixPath);
+            bootstrap.channel(ioTransport.domainSocketChannelClass());
+        } else {
+            if (TransportOptions.UNIX_PROTOCOL.equals(url.getProtocol())) {
+                throw new IllegalStateException("Unix domain socket is not supported by transport: " + ioTransport);
+            }
+            this.remoteAddress = InetSocketAddress.createUnresolved(url.getHost(), url.getPort());
+            bootstrap.channel(ioTransport.socketChannelClass())
+                    .option(ChannelOption.TCP_NODELAY, true);
+        }
 
         bootstrap.group(group)
-                .channel(NioSocketChannel.class)
-                .option(ChannelOption.TCP_NODELAY, true)
                 .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 3000)
-                .handler(new ChannelInitializer<SocketChannel>() {
+                .option(ChannelOption.WRITE_BUFFER_WATER_MARK, TransportOptions.writeBufferWaterMark(url))
+                .handler(new ChannelInitializer<Channel>() {
                     @Override
-                    protected void initChannel(SocketChannel ch) {
+                    protected void initChannel(Channel ch) {
+                        NettyConnection connection = new NettyConnection(ch, codec, maxInflight, overloadWaitMillis,
+                                maxMissedHeartbeats, methodIdHandshake, compactFrame, maxPayload);
+                        ch.attr(NettyConnection.CONNECTION_KEY).set(connection);
+
                         ChannelPipeline pipeline = ch.pipeline();
-                        pipeline.addLast(new RpcResponseDecoder());
-                        pipeline.addLast(new RpcRequestEncoder());
-                        pipeline.addLast(new RpcClientHandler());
+                        if (heartbeat > 0) {
+                            pipeline.addLast(new IdleStateHandler(heartbeat, 0, 0, TimeUnit.MILLISECONDS));
+                        }
+                        // 可选：合并多个调用线程发起的 flush，减少 write 系统调用
+                        FlushBatchingHandler flushBatching = FlushBatchingHandler.from(url);
+                        if (flushBatching != null) {
+                            pipeline.addLast(flushBatching);
+                        }
+                        pipeline.addLast(new RpcFrameDecoder<>(RpcProto.RpcResponse.parser(),
+                                CompactFrame::decodeResponse, RpcProto.RpcResponse::getBlobsList, url));
+                        pipeline.addLast(new RpcFrameEncoder(url));
+                        pipeline.addLast(new BlobFrameEncoder());
+                        pipeline.addLast(connection.new ResponseHandler());
                     }
                 });
     }
 
     @Override
     public void connect() throws Exception {
-        ChannelFuture future = bootstrap.connect(url.getHost(), url.getPort()).sync();
-        this.channel = future.channel();
-        System.out.println("[Netty] Connected to server: " + url.getHost() + ":" + url.getPort());
+        Exception lastError = null;
+        for (int slot = 0; slot < connections.length(); slot++) {
+            try {
+                ChannelFuture future = bootstrap.connect(remoteAddress).sync();
+                attach(slot, future.channel());
+            } catch (Exception e) {
+                // 部分连接失败时在后台重建，只要有一个连接可用即可对外服务
+                lastError = e;
+                scheduleReconnect(slot, 0);
+            }
+        }
+        if (!isConnected()) {
+            close();
+            throw lastError != null ? lastError : new IllegalStateException("No connection established");
+        }
+        System.out.println("[Netty] Connected to server: " + remoteAddress
+                + ", connections: " + connections.length());
     }
 
     @Override
     public boolean isConnected() {
-        return channel != null && channel.isActive();
+        for (int slot = 0; slot < connections.length(); slot++) {
+            NettyConnection connection = connections.get(slot);
+            if (connection != null && connection.isActive()) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
     public void close() {
-        if (channel != null) {
-            channel.close();
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        for (int slot = 0; slot < connections.length(); slot++) {
+            NettyConnection connection = connections.getAndSet(slot, null);
+            if (connection != null) {
+                connection.close();
+            }
+        }
+        if (group != null) {
+            SharedEventLoopGroup.release(ioTransport);
         }
-        group.shutdownGracefully();
-        pendingRequests.forEach((id, future) ->
-                future.completeExceptionally(new IllegalStateException("Connection closed")));
     }
 
     @Override
-    public Result send(Invocation invocation, long timeoutMillis) {
-        try {
-            // 1. 生成唯一请求ID
-            long requestId = requestIdGenerator.incrementAndGet();
-
-            // 2. 创建CompletableFuture等待响应
-            CompletableFuture<RpcProto.RpcResponse> future = new CompletableFuture<>();
-            pendingRequests.put(requestId, future);
-
-            try {
-                // 3. 构建请求
-                RpcProto.RpcRequest request = buildRequest(invocation, requestId);
-
-                // 4. 发送请求
-                if (channel == null || !channel.isActive()) {
-                    throw new IllegalStateException("Connection is not active");
-                }
-                channel.writeAndFlush(request).sync();
+    public CompletableFuture<Result> sendAsync(Invocation invocation, long timeoutMillis) {
+        NettyConnection connection = selectConnection();
+        if (connection == null) {
+            return CompletableFuture.failedFuture(
+                    new RpcException("Connection is not active: " + url.getAddress()));
+        }
 
-                // 5. 等待响应 (带超时)
-                RpcProto.RpcResponse response = future.get(timeoutMillis, TimeUnit.MILLISECONDS);
-                return buildResult(response);
-            } finally {
-                pendingRequests.remove(requestId);
-            }
+        // 生成唯一请求ID并构建请求
+        long requestId = requestIdGenerator.incrementAndGet();
+        Object request;
+        try {
+            List<BlobFrame.Blob> blobs = new ArrayList<>(0);
+            RpcProto.RpcRequest message = buildRequest(connection, invocation, requestId, blobs);
+            request = blobs.isEmpty() ? message : new BlobFrame(message, blobs);
         } catch (Exception e) {
-            if (e instanceof TimeoutException) {
-                throw new RuntimeException("Request timeout after " + timeoutMillis + "ms", e);
-            }
-            throw new RuntimeException("Failed to send RPC request", e);
+            return CompletableFuture.failedFuture(new RpcException("Failed to encode RPC request", e));
         }
+        return connection.send(requestId, request, timeoutMillis);
     }
 
-    private RpcProto.RpcRequest buildRequest(Invocation invocation, long requestId) {
-        RpcProto.RpcRequest.Builder builder = RpcProto.RpcRequest.newBuilder()
-                .setRequestId(requestId)
-                .setServiceName(invocation.getServiceName())
-                .setMethodName(invocation.methodName());
-
-        // 添加参数类型
-        for (Class<?> paramType : invocation.parameterTypes()) {
-            builder.addParameterTypes(paramType.getName());
+    /**
+     * 批量调用在一个帧中发出，子请求以序号作为 requestId，整个批次只占用一个在途请求
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<List<Result>> sendBatchAsync(List<Invocation> invocations, long timeoutMillis) {
+        if (invocations.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        NettyConnection connection = selectConnection();
+        if (connection == null) {
+            return CompletableFuture.failedFuture(
+                    new RpcException("Connection is not active: " + url.getAddress()));
         }
 
-        // 添加参数值 - 支持复杂对象类型
-        for (Object arg : invocation.arguments()) {
-            byte[] serialized = codec.encode(arg);
-            builder.addArguments(ByteString.copyFrom(serialized));
+        long requestId = requestIdGenerator.incrementAndGet();
+        RpcProto.RpcRequest.Builder builder = RpcProto.RpcRequest.newBuilder().setRequestId(requestId);
+        try {
+            for (int i = 0; i < invocations.size(); i++) {
+                builder.addBatch(buildRequest(connection, invocations.get(i), i, null));
+            }
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(new RpcException("Failed to encode RPC batch request", e));
         }
+        return connection.send(requestId, builder.build(), timeoutMillis).thenApply(result -> {
+            if (result.hasException()) {
+                throw new RpcException("RPC batch request failed", result.getException());
+            }
+            return (List<Result>) result.getValue();
+        });
+    }
 
-        return builder.build();
+    /**
+     * 流式调用：返回冷 Publisher，每次订阅开启一个独立的流。
+     * 参数中的 {@link Flow.Publisher}（至多一个）作为上行流按服务端授予的 credit 逐个发出，即双向流
+     */
+    @Override
+    public Flow.Publisher<Object> openStream(Invocation invocation) {
+        return subscriber -> {
+            NettyConnection connection = selectConnection();
+            if (connection == null) {
+                rejectStream(subscriber, new RpcException("Connection is not active: " + url.getAddress()));
+                return;
+            }
+            long requestId = requestIdGenerator.incrementAndGet();
+            Flow.Publisher<?> upstream;
+            RpcProto.RpcRequest request;
+            try {
+                upstream = upstreamOf(invocation);
+                request = buildRequest(connection, invocation, requestId, null).toBuilder()
+                        .setStream(RpcProto.StreamFrame.OPEN)
+                        .build();
+            } catch (Exception e) {
+                rejectStream(subscriber, new RpcException("Failed to encode RPC stream request", e));
+                return;
+            }
+            connection.openStream(requestId, request, upstream, subscriber);
+        };
     }
 
-    private Result buildResult(RpcProto.RpcResponse response) {
-        // protobuf中string类型默认是空字符串，不是null
-        if (response.getException() != null && !response.getException().isEmpty()) {
-            return new Result(new RuntimeException(response.getException()));
+    private static Flow.Publisher<?> upstreamOf(Invocation invocation) {
+        Flow.Publisher<?> upstream = null;
+        for (Object argument : invocation.arguments()) {
+            if (argument instanceof Flow.Publisher<?> publisher) {
+                if (upstream != null) {
+                    throw new IllegalArgumentException("Only one Flow.Publisher argument is supported");
+                }
+                upstream = publisher;
+            }
         }
-        // 反序列化返回值 - 支持复杂对象类型
-        byte[] resultBytes = response.getResult().toByteArray();
-        Object value = codec.decode(resultBytes, Object.class);
-        return new Result(value);
+        return upstream;
     }
 
-    // =============== 内部处理器 ===============
+    private static void rejectStream(Flow.Subscriber<? super Object> subscriber, Throwable error) {
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        subscriber.onError(error);
+    }
 
-    private class RpcClientHandler extends SimpleChannelInboundHandler<RpcProto.RpcResponse> {
-        @Override
-        protected void channelRead0(ChannelHandlerContext ctx, RpcProto.RpcResponse response) {
-            CompletableFuture<RpcProto.RpcResponse> future = pendingRequests.get(response.getRequestId());
-            if (future != null) {
-                future.complete(response);
-            } else {
-                System.err.println("[Netty] No pending request for ID: " + response.getRequestId());
+    /**
+     * 选择在途请求最少的活跃连接，优先可写的连接，起点轮转以便负载相同时均匀分布
+     */
+    private NettyConnection selectConnection() {
+        int size = connections.length();
+        int start = size == 1 ? 0 : Math.floorMod(selectIndex.getAndIncrement(), size);
+        NettyConnection selected = null;
+        boolean selectedWritable = false;
+        int minPending = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            NettyConnection connection = connections.get((start + i) % size);
+            if (connection == null || !connection.isActive()) {
+                continue;
+            }
+            boolean writable = connection.isWritable();
+            if (selectedWritable && !writable) {
+                continue;
+            }
+            int pending = connection.pendingCount();
+            if (pending < minPending || (writable && !selectedWritable)) {
+                selected = connection;
+                selectedWritable = writable;
+                minPending = pending;
             }
         }
+        return selected;
+    }
 
-        @Override
-        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
-            System.err.println("[Netty] Client exception: " + cause.getMessage());
-            pendingRequests.forEach((id, future) ->
-                    future.completeExceptionally(cause));
-            ctx.close();
+    private void attach(int slot, Channel channel) {
+        NettyConnection connection = channel.attr(NettyConnection.CONNECTION_KEY).get();
+        connections.set(slot, connection);
+        if (closed.get()) {
+            connection.close();
+            return;
         }
+        // 连接断开后在后台重建，只替换该槽位
+        channel.closeFuture().addListener(f -> {
+            if (!closed.get() && connections.compareAndSet(slot, connection, null)) {
+                System.err.println("[Netty] Connection lost: " + url.getAddress() + ", slot: " + slot);
+                scheduleReconnect(slot, 0);
+            }
+        });
     }
 
-    // =============== 编解码器 ===============
+    /**
+     * 带抖动的指数退避：第 n 次重试等待 [d/2, d)，d = min(base * 2^n, max)，
+     * 避免大量客户端在服务端恢复瞬间同时重连
+     */
+    private void scheduleReconnect(int slot, int attempt) {
+        if (closed.get()) {
+            return;
+        }
+        group.schedule(() -> {
+            if (closed.get()) {
+                return;
+            }
+            bootstrap.connect(remoteAddress).addListener((ChannelFutureListener) f -> {
+                if (f.isSuccess()) {
+                    attach(slot, f.channel());
+                    System.out.println("[Netty] Reconnected to server: " + url.getAddress() + ", slot: " + slot);
+                } else {
+                    scheduleReconnect(slot, attempt + 1);
+                }
+            });
+        }, reconnectDelay(attempt), TimeUnit.MILLISECONDS);
+    }
 
-    private static class RpcResponseDecoder extends ByteToMessageDecoder {
-        @Override
-        protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
-            if (in.readableBytes() < 4) return;
+    private static long reconnectDelay(int attempt) {
+        long delay = RECONNECT_BASE_DELAY_MILLIS << Math.min(attempt, 16);
+        delay = Math.min(delay, RECONNECT_MAX_DELAY_MILLIS);
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
 
-            in.markReaderIndex();
-            int dataLength = in.readInt();
+    /**
+     * @param connection 发送请求的连接，已完成握手时以其方法 ID 代替服务名、方法名和参数类型
+     * @param blobs      收集 Path / ByteBuffer 参数，它们跟随帧以原始字节写出；为 null 表示不支持大对象（批量、流式调用）
+     */
+    private RpcProto.RpcRequest buildRequest(NettyConnection connection, Invocation invocation, long requestId,
+                                             List<BlobFrame.Blob> blobs) {
+        RpcProto.RpcRequest.Builder builder = RpcProto.RpcRequest.newBuilder()
+                .setRequestId(requestId);
 
-            if (in.readableBytes() < dataLength) {
-                in.resetReaderIndex();
-                return;
+        Class<?>[] parameterTypes = invocation.parameterTypes();
+        int methodId = connection.methodId(invocation.getServiceName(), invocation.methodName(), parameterTypes);
+        if (methodId != 0) {
+            builder.setMethodId(methodId);
+        } else {
+            builder.setServiceName(invocation.getServiceName())
+                    .setMethodName(invocation.methodName());
+            // 添加参数类型
+            for (Class<?> paramType : parameterTypes) {
+                builder.addParameterTypes(paramType.getName());
             }
+        }
 
-            byte[] data = new byte[dataLength];
-            in.readBytes(data);
-            try {
-                out.add(RpcProto.RpcResponse.parseFrom(data));
-            } catch (Exception e) {
-                throw new RuntimeException("Failed to decode RpcResponse", e);
+        // 添加参数值 - 序列化结果由本次请求独占，直接包装而不再复制
+        Object[] arguments = invocation.arguments();
+        byte[][] payloads = new byte[arguments.length][];
+        int payloadSize = 0;
+        for (int i = 0; i < arguments.length; i++) {
+            if (BlobFrame.isBlob(arguments[i])) {
+                if (blobs == null) {
+                    throw new IllegalArgumentException("Blob arguments are not supported in batch or streaming calls");
+                }
+                BlobFrame.Blob blob = BlobFrame.Blob.of(arguments[i]);
+                builder.addBlobs(blob.describe(i));
+                blobs.add(blob);
+                payloads[i] = EMPTY_PAYLOAD;
+                continue;
             }
+            // 上行流参数不随请求发送，其元素在流建立后以 DATA 帧发出
+            payloads[i] = arguments[i] instanceof Flow.Publisher ? EMPTY_PAYLOAD : codec.encode(arguments[i]);
+            payloadSize += payloads[i].length;
         }
-    }
-
-    private static class RpcRequestEncoder extends MessageToByteEncoder<RpcProto.RpcRequest> {
-        @Override
-        protected void encode(ChannelHandlerContext ctx, RpcProto.RpcRequest request, ByteBuf out) {
-            byte[] data = request.toByteArray();
-            out.writeInt(data.length);
-            out.writeBytes(data);
+        // 参数总大小达到阈值时整体压缩，并在帧中标记压缩算法
+        boolean compress = compression.shouldCompress(payloadSize);
+        if (compress) {
+            builder.setCompression(compression.name());
+        }
+        for (byte[] payload : payloads) {
+            builder.addArguments(UnsafeByteOperations.unsafeWrap(compress ? compression.compress(payload) : payload));
         }
+
+        return builder.build();
     }
 }
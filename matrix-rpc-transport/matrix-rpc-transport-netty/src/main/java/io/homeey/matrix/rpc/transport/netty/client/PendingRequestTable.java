@@ -0,0 +1,191 @@
+package io.homeey.matrix.rpc.transport.netty.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 以原始 long 请求ID为键的在途请求表
+ * <p>
+ * 分段加锁 + 开放寻址（线性探测，删除时回移），put/get/remove 不装箱 Long，也不分配链表节点。
+ * 请求ID从 1 开始递增，0 作为空槽标记
+ *
+ * @param <V> 在途请求类型
+ */
+final class PendingRequestTable<V> {
+
+    private static final long EMPTY = 0L;
+    private static final int DEFAULT_STRIPES = 16;
+    private static final int DEFAULT_STRIPE_CAPACITY = 64;
+
+    private final Stripe<V>[] stripes;
+    private final int stripeMask;
+
+    PendingRequestTable() {
+        this(DEFAULT_STRIPES, DEFAULT_STRIPE_CAPACITY);
+    }
+
+    @SuppressWarnings("unchecked")
+    PendingRequestTable(int stripes, int stripeCapacity) {
+        int stripeCount = powerOfTwo(stripes);
+        this.stripes = new Stripe[stripeCount];
+        this.stripeMask = stripeCount - 1;
+        for (int i = 0; i < stripeCount; i++) {
+            this.stripes[i] = new Stripe<>(powerOfTwo(Math.max(8, stripeCapacity)));
+        }
+    }
+
+    void put(long requestId, V value) {
+        if (requestId == EMPTY) {
+            throw new IllegalArgumentException("Request ID 0 is reserved");
+        }
+        long hash = mix(requestId);
+        stripeFor(hash).put(requestId, (int) hash, value);
+    }
+
+    V remove(long requestId) {
+        long hash = mix(requestId);
+        return stripeFor(hash).remove(requestId, (int) hash);
+    }
+
+    /**
+     * 在途请求数（各分段计数之和，非原子快照）
+     */
+    int size() {
+        int size = 0;
+        for (Stripe<V> stripe : stripes) {
+            size += stripe.size;
+        }
+        return size;
+    }
+
+    /**
+     * 移除并返回全部在途请求（用于连接关闭时统一失败）
+     */
+    List<V> removeAll() {
+        List<V> removed = new ArrayList<>();
+        for (Stripe<V> stripe : stripes) {
+            stripe.drainTo(removed);
+        }
+        return removed;
+    }
+
+    private Stripe<V> stripeFor(long hash) {
+        return stripes[(int) (hash >>> 32) & stripeMask];
+    }
+
+    /**
+     * murmur3 fmix64，使递增的请求ID均匀分布到各分段和槽位
+     */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private static int powerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    private static final class Stripe<V> {
+        private long[] keys;
+        private Object[] values;
+        private int mask;
+        private volatile int size;
+
+        Stripe(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new Object[capacity];
+            this.mask = capacity - 1;
+        }
+
+        synchronized void put(long key, int hash, V value) {
+            if (size + 1 > (keys.length >>> 2) * 3) {
+                resize(keys.length << 1);
+            }
+            int index = hash & mask;
+            while (keys[index] != EMPTY) {
+                if (keys[index] == key) {
+                    values[index] = value;
+                    return;
+                }
+                index = (index + 1) & mask;
+            }
+            keys[index] = key;
+            values[index] = value;
+            size++;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V remove(long key, int hash) {
+            int index = hash & mask;
+            while (keys[index] != EMPTY) {
+                if (keys[index] == key) {
+                    V value = (V) values[index];
+                    deleteAt(index);
+                    size--;
+                    return value;
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized void drainTo(List<V> target) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY) {
+                    target.add((V) values[i]);
+                }
+            }
+            Arrays.fill(keys, EMPTY);
+            Arrays.fill(values, null);
+            size = 0;
+        }
+
+        /**
+         * 删除槽位并把后续探测链上的元素回移，避免使用墓碑标记
+         */
+        private void deleteAt(int hole) {
+            int index = hole;
+            while (true) {
+                index = (index + 1) & mask;
+                long key = keys[index];
+                if (key == EMPTY) {
+                    break;
+                }
+                int ideal = (int) mix(key) & mask;
+                // hole 位于该元素的探测路径 [ideal, index] 上时才能回移
+                if (((index - ideal) & mask) >= ((index - hole) & mask)) {
+                    keys[hole] = key;
+                    values[hole] = values[index];
+                    hole = index;
+                }
+            }
+            keys[hole] = EMPTY;
+            values[hole] = null;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new long[capacity];
+            values = new Object[capacity];
+            mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                long key = oldKeys[i];
+                if (key != EMPTY) {
+                    int index = (int) mix(key) & mask;
+                    while (keys[index] != EMPTY) {
+                        index = (index + 1) & mask;
+                    }
+                    keys[index] = key;
+                    values[index] = oldValues[i];
+                }
+            }
+        }
+    }
+}
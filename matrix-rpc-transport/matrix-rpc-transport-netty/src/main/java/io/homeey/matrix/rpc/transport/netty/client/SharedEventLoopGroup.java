@@ -0,0 +1,61 @@
+package io.homeey.matrix.rpc.transport.netty.client;
+
+import io.homeey.matrix.rpc.transport.netty.IoTransport;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 进程级共享的客户端 EventLoopGroup（引用计数）
+ * <p>
+ * 所有 NettyTransportClient 共用同一组 IO 线程（按 IO 传输类型区分），线程数不随服务端数量增长；
+ * 最后一个客户端关闭时释放线程组
+ * <p>
+ * 配置：
+ * <pre>
+ * -Dmatrix.transport.client.threads=8   # IO 线程数（默认 min(CPU核数 + 1, 32)）
+ * </pre>
+ */
+final class SharedEventLoopGroup {
+
+    private static final String THREADS_KEY = "matrix.transport.client.threads";
+    private static final int DEFAULT_THREADS = Math.min(Runtime.getRuntime().availableProcessors() + 1, 32);
+
+    private static final Map<IoTransport, EventLoopGroup> GROUPS = new EnumMap<>(IoTransport.class);
+    private static final Map<IoTransport, Integer> REF_COUNTS = new EnumMap<>(IoTransport.class);
+
+    private SharedEventLoopGroup() {
+    }
+
+    /**
+     * 获取共享线程组，引用计数加一
+     */
+    static synchronized EventLoopGroup acquire(IoTransport transport) {
+        int refCount = REF_COUNTS.getOrDefault(transport, 0);
+        if (refCount == 0) {
+            int threads = Integer.getInteger(THREADS_KEY, DEFAULT_THREADS);
+            GROUPS.put(transport, transport.newEventLoopGroup(threads,
+                    new DefaultThreadFactory("matrix-client-" + transport.name().toLowerCase())));
+        }
+        REF_COUNTS.put(transport, refCount + 1);
+        return GROUPS.get(transport);
+    }
+
+    /**
+     * 释放共享线程组，引用计数归零时关闭
+     */
+    static synchronized void release(IoTransport transport) {
+        int refCount = REF_COUNTS.getOrDefault(transport, 0);
+        if (refCount == 0) {
+            return;
+        }
+        if (refCount == 1) {
+            REF_COUNTS.remove(transport);
+            GROUPS.remove(transport).shutdownGracefully();
+        } else {
+            REF_COUNTS.put(transport, refCount - 1);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package io.homeey.matrix.rpc.transport.netty.codec;
+
+import com.google.protobuf.MessageLite;
+import io.homeey.matrix.rpc.codec.protobuf.RpcProto;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 携带大对象的出站消息：protobuf 帧之后按顺序紧跟各大对象的原始字节
+ * <p>
+ * {@link Path} 以 {@code FileRegion} 写出（支持时走 sendfile，不经过用户态），
+ * {@link ByteBuffer}（包括 MappedByteBuffer）直接包装写出；两者都不经过 Codec 序列化，也不整体加载到堆上。
+ * 帧和大对象在同一次 write 中交给 {@link BlobFrameEncoder}，不会与其他线程写出的帧交错
+ *
+ * @param message 描述了各大对象长度的 RpcRequest / RpcResponse
+ * @param blobs   与消息中 blobs 字段一一对应的大对象
+ */
+public record BlobFrame(MessageLite message, List<Blob> blobs) {
+
+    /**
+     * 是否按大对象传输
+     */
+    public static boolean isBlob(Object value) {
+        return value instanceof Path || value instanceof ByteBuffer;
+    }
+
+    /**
+     * 大对象及其在写出时刻确定的长度
+     */
+    public record Blob(Object source, long length) {
+
+        public static Blob of(Object value) {
+            if (value instanceof ByteBuffer buffer) {
+                return new Blob(buffer.duplicate(), buffer.remaining());
+            }
+            try {
+                return new Blob(value, Files.size((Path) value));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read blob size: " + value, e);
+            }
+        }
+
+        /**
+         * 帧中的大对象描述
+         *
+         * @param index 参数序号，返回值为 0
+         */
+        public RpcProto.Blob describe(int index) {
+            return RpcProto.Blob.newBuilder()
+                    .setIndex(index)
+                    .setLength(length)
+                    .setBuffer(source instanceof ByteBuffer)
+                    .build();
+        }
+    }
+}
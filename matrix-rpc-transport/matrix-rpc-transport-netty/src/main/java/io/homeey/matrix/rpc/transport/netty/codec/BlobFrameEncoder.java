@@ -0,0 +1,36 @@
+package io.homeey.matrix.rpc.transport.netty.codec;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.handler.codec.MessageToMessageEncoder;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 把 {@link BlobFrame} 拆成 protobuf 消息和大对象的原始字节
+ * <p>
+ * 需位于 {@link RpcFrameEncoder} 之后（更靠近业务处理器），消息继续交给帧编码器，
+ * 文件以 {@link DefaultFileRegion} 零拷贝写出，ByteBuffer 包装后写出，不复制内容
+ */
+public class BlobFrameEncoder extends MessageToMessageEncoder<BlobFrame> {
+
+    public BlobFrameEncoder() {
+        super(BlobFrame.class);
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, BlobFrame frame, List<Object> out) {
+        out.add(frame.message());
+        for (BlobFrame.Blob blob : frame.blobs()) {
+            if (blob.source() instanceof ByteBuffer buffer) {
+                out.add(Unpooled.wrappedBuffer(buffer));
+            } else {
+                // 文件在写出时才打开，region 释放时关闭
+                out.add(new DefaultFileRegion(((Path) blob.source()).toFile(), 0, blob.length()));
+            }
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package io.homeey.matrix.rpc.transport.netty.codec;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.UnsafeByteOperations;
+import io.homeey.matrix.rpc.codec.protobuf.RpcProto;
+import io.homeey.matrix.rpc.common.URL;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.Channel;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.util.AttributeKey;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * 紧凑二进制帧：固定长度的帧头加 varint 编码的帧体，普通调用和心跳不再经过 protobuf 的通用编解码
+ * <pre>
+ * 0      2         3       4               5        6            14            18
+ * +------+---------+-------+---------------+--------+------------+-------------+--------+
+ * | 魔数 | version | flags | serialization | status | request id | body length | body   |
+ * | 0xDA7A (2B)    | 1B    | 1B            | 1B     | 8B         | 4B          | ...    |
+ * +------+---------+-------+---------------+--------+------------+-------------+--------+
+ * </pre>
+ * 帧体中的字符串和字节数组均为 [varint 长度][内容]，集合为 [varint 个数][元素...]：
+ * <ul>
+ *     <li>请求：[压缩算法]? 服务名 方法名 参数类型* 参数* attachments(键 值)*</li>
+ *     <li>使用方法 ID 的请求：[压缩算法]? 方法 ID 参数* attachments(键 值)*</li>
+ *     <li>响应：[压缩算法]? 异常信息 返回值</li>
+ *     <li>心跳：空</li>
+ * </ul>
+ * 压缩算法仅在 {@link #FLAG_COMPRESSED} 置位时出现。魔数最高位为 1，作为 protobuf 帧的长度字段时是负数，
+ * 因此接收端按前两个字节即可区分两种帧，同一连接上可以混用。
+ * <p>
+ * 连接总是以 protobuf 帧开始：消费端在握手中请求紧凑帧（{@code transport.frame}，compact 默认 / protobuf），
+ * 服务端在握手响应中确认后消费端才切换，因此不会向不认识魔数的旧版服务端发送紧凑帧。
+ * 服务端自动识别，收到紧凑帧后该连接上的响应也使用紧凑帧。批量、流式、握手和携带大对象的消息仍使用 protobuf 帧
+ */
+public final class CompactFrame {
+
+    public static final String FRAME_KEY = "transport.frame";
+    public static final String COMPACT = "compact";
+    public static final String PROTOBUF = "protobuf";
+
+    public static final short MAGIC = (short) 0xDA7A;
+    public static final byte VERSION = 1;
+    public static final int HEADER_LENGTH = 18;
+
+    public static final int FLAG_REQUEST = 1;
+    public static final int FLAG_RESPONSE = 1 << 1;
+    public static final int FLAG_HEARTBEAT = 1 << 2;
+    /**
+     * 单向调用，服务端不回写响应（预留，当前消费端不会发送）
+     */
+    public static final int FLAG_ONEWAY = 1 << 3;
+    public static final int FLAG_COMPRESSED = 1 << 4;
+    /**
+     * 请求以握手得到的方法 ID 代替服务名、方法名和参数类型
+     */
+    public static final int FLAG_METHOD_ID = 1 << 5;
+
+    /**
+     * 参数和返回值的序列化方式，两端目前固定使用 kryo
+     */
+    public static final byte SERIALIZATION_KRYO = 1;
+
+    private static final int STATUS_OFFSET = 5;
+    private static final int REQUEST_ID_OFFSET = 6;
+    private static final int BODY_LENGTH_OFFSET = 14;
+
+    /**
+     * 连接是否使用紧凑帧：消费端在握手确认后设置，服务端在收到第一个紧凑帧时设置
+     */
+    private static final AttributeKey<Boolean> ENABLED_KEY = AttributeKey.valueOf("matrix.frame.compact");
+
+    private CompactFrame() {
+    }
+
+    public static boolean isCompact(URL url) {
+        return !PROTOBUF.equalsIgnoreCase(url.getParameter(FRAME_KEY, COMPACT));
+    }
+
+    public static void enable(Channel channel) {
+        channel.attr(ENABLED_KEY).set(Boolean.TRUE);
+    }
+
+    public static boolean isEnabled(Channel channel) {
+        return Boolean.TRUE.equals(channel.attr(ENABLED_KEY).get());
+    }
+
+    /**
+     * 缓冲区是否以紧凑帧开头，至少需要两个可读字节
+     */
+    static boolean startsWithMagic(ByteBuf in) {
+        return in.readableBytes() >= Short.BYTES && in.getShort(in.readerIndex()) == MAGIC;
+    }
+
+    /**
+     * 从帧头读取帧体长度，帧头未到齐时返回 -1
+     */
+    static int peekBodyLength(ByteBuf in) {
+        if (in.readableBytes() < HEADER_LENGTH) {
+            return -1;
+        }
+        int bodyLength = in.getInt(in.readerIndex() + BODY_LENGTH_OFFSET);
+        if (bodyLength < 0) {
+            throw new CorruptedFrameException("Negative compact frame body length: " + bodyLength);
+        }
+        return bodyLength;
+    }
+
+    /**
+     * 只有普通调用、普通响应和心跳可以使用紧凑帧
+     */
+    static boolean supports(MessageLite message) {
+        if (message instanceof RpcProto.RpcRequest request) {
+            return request.getBatchCount() == 0 && request.getStream() == RpcProto.StreamFrame.UNARY
+                    && request.getBlobsCount() == 0 && !request.getHandshake();
+        }
+        if (message instanceof RpcProto.RpcResponse response) {
+            return response.getBatchCount() == 0 && response.getStream() == RpcProto.StreamFrame.UNARY
+                    && response.getBlobsCount() == 0 && !response.getHandshake()
+                    && response.getStatus() >= 0 && response.getStatus() <= 0xFF;
+        }
+        return false;
+    }
+
+    // =============== 编码 ===============
+
+    /**
+     * 帧体长度，用于按精确大小分配缓冲区
+     */
+    static int bodyLength(MessageLite message) {
+        if (message instanceof RpcProto.RpcRequest request) {
+            if (request.getHeartbeat()) {
+                return 0;
+            }
+            int length = compressionLength(request.getCompression())
+                    + varintLength(request.getArgumentsCount())
+                    + varintLength(request.getAttachmentsCount());
+            if (request.getMethodId() != 0) {
+                length += varintLength(request.getMethodId());
+            } else {
+                length += stringLength(request.getServiceName())
+                        + stringLength(request.getMethodName())
+                        + varintLength(request.getParameterTypesCount());
+                for (String parameterType : request.getParameterTypesList()) {
+                    length += stringLength(parameterType);
+                }
+            }
+            for (ByteString argument : request.getArgumentsList()) {
+                length += bytesLength(argument);
+            }
+            for (Map.Entry<String, String> attachment : request.getAttachmentsMap().entrySet()) {
+                length += stringLength(attachment.getKey()) + stringLength(attachment.getValue());
+            }
+            return length;
+        }
+        RpcProto.RpcResponse response = (RpcProto.RpcResponse) message;
+        if (response.getHeartbeat()) {
+            return 0;
+        }
+        return compressionLength(response.getCompression())
+                + stringLength(response.getException())
+                + bytesLength(response.getResult());
+    }
+
+    static void encode(MessageLite message, ByteBuf out) {
+        int start = out.writerIndex();
+        if (message instanceof RpcProto.RpcRequest request) {
+            int flags = FLAG_REQUEST;
+            if (request.getHeartbeat()) {
+                flags |= FLAG_HEARTBEAT;
+            } else {
+                if (!request.getCompression().isEmpty()) {
+                    flags |= FLAG_COMPRESSED;
+                }
+                if (request.getMethodId() != 0) {
+                    flags |= FLAG_METHOD_ID;
+                }
+            }
+            writeHeader(out, flags, 0, request.getRequestId());
+            if (!request.getHeartbeat()) {
+                writeRequestBody(request, out);
+            }
+        } else {
+            RpcProto.RpcResponse response = (RpcProto.RpcResponse) message;
+            int flags = FLAG_RESPONSE;
+            if (response.getHeartbeat()) {
+                flags |= FLAG_HEARTBEAT;
+            } else if (!response.getCompression().isEmpty()) {
+                flags |= FLAG_COMPRESSED;
+            }
+            writeHeader(out, flags, response.getStatus(), response.getRequestId());
+            if (!response.getHeartbeat()) {
+                writeCompression(out, response.getCompression());
+                writeString(out, response.getException());
+                writeBytes(out, response.getResult());
+            }
+        }
+        // 帧体写完后回填长度，避免再计算一遍
+        out.setInt(start + BODY_LENGTH_OFFSET, out.writerIndex() - start - HEADER_LENGTH);
+    }
+
+    private static void writeHeader(ByteBuf out, int flags, int status, long requestId) {
+        out.writeShort(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(flags);
+        out.writeByte(SERIALIZATION_KRYO);
+        out.writeByte(status);
+        out.writeLong(requestId);
+        out.writeInt(0);
+    }
+
+    private static void writeRequestBody(RpcProto.RpcRequest request, ByteBuf out) {
+        writeCompression(out, request.getCompression());
+        if (request.getMethodId() != 0) {
+            writeVarint(out, request.getMethodId());
+        } else {
+            writeString(out, request.getServiceName());
+            writeString(out, request.getMethodName());
+            writeVarint(out, request.getParameterTypesCount());
+            for (String parameterType : request.getParameterTypesList()) {
+                writeString(out, parameterType);
+            }
+        }
+        writeVarint(out, request.getArgumentsCount());
+        for (ByteString argument : request.getArgumentsList()) {
+            writeBytes(out, argument);
+        }
+        writeVarint(out, request.getAttachmentsCount());
+        for (Map.Entry<String, String> attachment : request.getAttachmentsMap().entrySet()) {
+            writeString(out, attachment.getKey());
+            writeString(out, attachment.getValue());
+        }
+    }
+
+    private static void writeCompression(ByteBuf out, String compression) {
+        if (!compression.isEmpty()) {
+            writeString(out, compression);
+        }
+    }
+
+    private static void writeString(ByteBuf out, String value) {
+        writeVarint(out, ByteBufUtil.utf8Bytes(value));
+        ByteBufUtil.writeUtf8(out, value);
+    }
+
+    private static void writeBytes(ByteBuf out, ByteString value) {
+        writeVarint(out, value.size());
+        out.writeBytes(value.asReadOnlyByteBuffer());
+    }
+
+    private static void writeVarint(ByteBuf out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int compressionLength(String compression) {
+        return compression.isEmpty() ? 0 : stringLength(compression);
+    }
+
+    private static int stringLength(String value) {
+        int length = ByteBufUtil.utf8Bytes(value);
+        return varintLength(length) + length;
+    }
+
+    private static int bytesLength(ByteString value) {
+        return varintLength(value.size()) + value.size();
+    }
+
+    private static int varintLength(int value) {
+        return (38 - Integer.numberOfLeadingZeros(value | 1)) / 7;
+    }
+
+    // =============== 解码 ===============
+
+    /**
+     * 解码请求帧；参数以帧缓冲区切片的形式引用，帧释放前有效
+     */
+    public static RpcProto.RpcRequest decodeRequest(ByteBuf frame) {
+        int start = frame.readerIndex();
+        int flags = readHeader(frame, FLAG_REQUEST);
+        RpcProto.RpcRequest.Builder builder = RpcProto.RpcRequest.newBuilder()
+                .setRequestId(frame.getLong(start + REQUEST_ID_OFFSET));
+        if ((flags & FLAG_HEARTBEAT) != 0) {
+            return builder.setHeartbeat(true).build();
+        }
+        if ((flags & FLAG_COMPRESSED) != 0) {
+            builder.setCompression(readString(frame));
+        }
+        if ((flags & FLAG_METHOD_ID) != 0) {
+            builder.setMethodId(readVarint(frame));
+        } else {
+            builder.setServiceName(readString(frame))
+                    .setMethodName(readString(frame));
+            for (int i = readCount(frame); i > 0; i--) {
+                builder.addParameterTypes(readString(frame));
+            }
+        }
+        for (int i = readCount(frame); i > 0; i--) {
+            builder.addArguments(readBytes(frame));
+        }
+        for (int i = readCount(frame); i > 0; i--) {
+            builder.putAttachments(readString(frame), readString(frame));
+        }
+        return builder.build();
+    }
+
+    /**
+     * 解码响应帧；返回值以帧缓冲区切片的形式引用，帧释放前有效
+     */
+    public static RpcProto.RpcResponse decodeResponse(ByteBuf frame) {
+        int start = frame.readerIndex();
+        int flags = readHeader(frame, FLAG_RESPONSE);
+        RpcProto.RpcResponse.Builder builder = RpcProto.RpcResponse.newBuilder()
+                .setRequestId(frame.getLong(start + REQUEST_ID_OFFSET))
+                .setStatus(frame.getUnsignedByte(start + STATUS_OFFSET));
+        if ((flags & FLAG_HEARTBEAT) != 0) {
+            return builder.setHeartbeat(true).build();
+        }
+        if ((flags & FLAG_COMPRESSED) != 0) {
+            builder.setCompression(readString(frame));
+        }
+        return builder.setException(readString(frame))
+                .setResult(readBytes(frame))
+                .build();
+    }
+
+    /**
+     * 校验帧头并跳过，读指针停在帧体起点
+     *
+     * @return flags
+     */
+    private static int readHeader(ByteBuf frame, int direction) {
+        int index = frame.readerIndex();
+        byte version = frame.getByte(index + 2);
+        if (version != VERSION) {
+            throw new CorruptedFrameException("Unsupported compact frame version: " + version);
+        }
+        int flags = frame.getUnsignedByte(index + 3);
+        if ((flags & direction) == 0) {
+            throw new CorruptedFrameException("Unexpected compact frame direction, flags: " + flags);
+        }
+        byte serialization = frame.getByte(index + 4);
+        if (serialization != SERIALIZATION_KRYO) {
+            throw new CorruptedFrameException("Unsupported serialization id: " + serialization);
+        }
+        frame.skipBytes(HEADER_LENGTH);
+        return flags;
+    }
+
+    private static String readString(ByteBuf frame) {
+        int length = readLength(frame);
+        String value = frame.toString(frame.readerIndex(), length, StandardCharsets.UTF_8);
+        frame.skipBytes(length);
+        return value;
+    }
+
+    private static ByteString readBytes(ByteBuf frame) {
+        int length = readLength(frame);
+        if (length == 0) {
+            return ByteString.EMPTY;
+        }
+        // 与 protobuf 帧开启别名时一致，直接引用帧内存
+        ByteString value = UnsafeByteOperations.unsafeWrap(frame.nioBuffer(frame.readerIndex(), length));
+        frame.skipBytes(length);
+        return value;
+    }
+
+    private static int readCount(ByteBuf frame) {
+        // 每个元素至少占一个字节，个数不可能超过剩余字节数
+        return readLength(frame);
+    }
+
+    private static int readLength(ByteBuf frame) {
+        int length = readVarint(frame);
+        if (length < 0 || length > frame.readableBytes()) {
+            throw new CorruptedFrameException("Invalid length in compact frame: " + length);
+        }
+        return length;
+    }
+
+    private static int readVarint(ByteBuf frame) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (!frame.isReadable()) {
+                throw new CorruptedFrameException("Truncated varint in compact frame");
+            }
+            byte b = frame.readByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new CorruptedFrameException("Malformed varint in compact frame");
+    }
+}
@@ -0,0 +1,78 @@
+package io.homeey.matrix.rpc.transport.netty.codec;
+
+import com.google.protobuf.ByteString;
+import io.homeey.matrix.rpc.codec.api.Compressor;
+import io.homeey.matrix.rpc.common.URL;
+import io.homeey.matrix.rpc.spi.ExtensionLoader;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 参数 / 返回值负载压缩策略
+ * <p>
+ * 序列化后的负载总大小达到阈值时，使用配置的 {@link Compressor} 压缩，
+ * 并把扩展名写入消息的 compression 字段；接收端按该字段选择同名实现解压。
+ * 两端各自按本端 URL 决定是否压缩发出的负载，解压只依赖帧中的标记
+ * <p>
+ * 配置示例：
+ * <pre>
+ * compression=snappy&amp;compression.threshold=1024
+ * </pre>
+ */
+public final class PayloadCompression {
+
+    public static final String COMPRESSION_KEY = "compression";
+    public static final String THRESHOLD_KEY = "compression.threshold";
+    public static final int DEFAULT_THRESHOLD = 1024;
+
+    private static final PayloadCompression NONE = new PayloadCompression("", null, Integer.MAX_VALUE);
+
+    private final String name;
+    private final Compressor compressor;
+    private final int threshold;
+
+    private PayloadCompression(String name, Compressor compressor, int threshold) {
+        this.name = name;
+        this.compressor = compressor;
+        this.threshold = threshold;
+    }
+
+    public static PayloadCompression from(URL url) {
+        String name = url.getParameter(COMPRESSION_KEY);
+        if (name == null || name.isEmpty() || "none".equalsIgnoreCase(name)) {
+            return NONE;
+        }
+        Compressor compressor = ExtensionLoader.getExtensionLoader(Compressor.class).getExtension(name);
+        return new PayloadCompression(name, compressor, Math.max(0, url.getParameter(THRESHOLD_KEY, DEFAULT_THRESHOLD)));
+    }
+
+    /**
+     * 负载达到阈值时才值得压缩，小负载的压缩收益抵不过 CPU 开销
+     */
+    public boolean shouldCompress(int payloadSize) {
+        return compressor != null && payloadSize >= threshold;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public byte[] compress(byte[] payload) {
+        return compressor.compress(payload);
+    }
+
+    /**
+     * 取出可交给 Codec 的负载：未压缩时直接返回帧缓冲区切片，压缩时解压为新的缓冲区
+     *
+     * @param data        消息中的 bytes 字段
+     * @param compression 消息中的压缩标记，空字符串表示未压缩
+     * @param maxLength   解压后允许的最大字节数，与帧大小上限 {@code transport.payload} 一致
+     */
+    public static ByteBuffer payload(ByteString data, String compression, int maxLength) {
+        if (compression.isEmpty()) {
+            return data.asReadOnlyByteBuffer();
+        }
+        Compressor compressor = ExtensionLoader.getExtensionLoader(Compressor.class).getExtension(compression);
+        return ByteBuffer.wrap(compressor.decompress(data.asReadOnlyByteBuffer(), maxLength));
+    }
+}
@@ -0,0 +1,103 @@
+package io.homeey.matrix.rpc.transport.netty.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.ReferenceCounted;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 解码后的 RPC 消息及其底层帧缓冲区
+ * <p>
+ * 消息中的 bytes 字段（参数、返回值）以别名方式引用帧缓冲区而非复制，
+ * 因此帧在消息处理完成前必须保持引用；引用计数直接委托给帧缓冲区，
+ * 交给 {@code SimpleChannelInboundHandler} 处理后会被自动释放。
+ * 帧后跟随的大对象已落到临时文件，以 {@link #blobs()} 给出，不受帧释放影响；
+ * 帧未交给应用时（迟到的响应、解码失败或被拒绝的请求）须以 {@link #discardBlobs(List)} 删除临时文件
+ *
+ * @param <M> protobuf 消息类型
+ */
+public final class RpcFrame<M> implements ReferenceCounted {
+
+    private final M message;
+    private final ByteBuf buffer;
+    private final List<Object> blobs;
+
+    RpcFrame(M message, ByteBuf buffer) {
+        this(message, buffer, List.of());
+    }
+
+    RpcFrame(M message, ByteBuf buffer, List<Object> blobs) {
+        this.message = message;
+        this.buffer = buffer;
+        this.blobs = blobs;
+    }
+
+    /**
+     * 获取消息，仅在帧被释放前有效
+     */
+    public M message() {
+        return message;
+    }
+
+    RpcFrame<M> withBlobs(List<Object> blobs) {
+        return new RpcFrame<>(message, buffer, blobs);
+    }
+
+    /**
+     * 帧后跟随的大对象（{@code java.nio.file.Path} 或只读的 {@code MappedByteBuffer}），与消息中 blobs 字段一一对应
+     */
+    public List<Object> blobs() {
+        return blobs;
+    }
+
+    /**
+     * 删除未交给应用的 {@code Path} 大对象；映射缓冲区的临时文件在接收时已删除，无需处理
+     */
+    public static void discardBlobs(List<Object> blobs) {
+        for (Object blob : blobs) {
+            if (blob instanceof Path path) {
+                RpcFrameDecoder.deleteQuietly(path);
+            }
+        }
+    }
+
+    @Override
+    public int refCnt() {
+        return buffer.refCnt();
+    }
+
+    @Override
+    public RpcFrame<M> retain() {
+        buffer.retain();
+        return this;
+    }
+
+    @Override
+    public RpcFrame<M> retain(int increment) {
+        buffer.retain(increment);
+        return this;
+    }
+
+    @Override
+    public RpcFrame<M> touch() {
+        buffer.touch();
+        return this;
+    }
+
+    @Override
+    public RpcFrame<M> touch(Object hint) {
+        buffer.touch(hint);
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return buffer.release();
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return buffer.release(decrement);
+    }
+}
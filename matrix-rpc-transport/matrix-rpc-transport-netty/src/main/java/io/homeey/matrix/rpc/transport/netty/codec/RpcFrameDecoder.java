@@ -0,0 +1,241 @@
+package io.homeey.matrix.rpc.transport.netty.codec;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.Parser;
+import com.google.protobuf.UnsafeByteOperations;
+import io.homeey.matrix.rpc.codec.protobuf.RpcProto;
+import io.homeey.matrix.rpc.common.URL;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.TooLongFrameException;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * RPC 帧解码器：[int length][protobuf bytes][blob bytes...]，或以魔数开头的 {@link CompactFrame}
+ * <p>
+ * 按长度字段切分帧并限制最大帧大小（URL 参数 {@code transport.payload}，默认 8MB），
+ * 随后直接在池化的帧缓冲区上解析 protobuf：bytes 字段开启别名，
+ * 参数和返回值以缓冲区切片的形式交给 Codec，整个过程不复制为 byte[]
+ * <p>
+ * 消息声明了大对象时，紧随其后的原始字节边到达边写入临时文件（目录由 {@code transport.blob.dir} 指定，
+ * 默认系统临时目录），不在堆上聚合，也不受最大帧大小限制，单个大对象的声明长度由 {@code transport.blob.max}
+ * 限制（默认 1GB），超出时不写入任何字节，直接以异常关闭连接；全部落盘后才连同消息一起向后传递。
+ * 还原为 ByteBuffer 的大对象以只读方式映射后立即删除临时文件，还原为 Path 的临时文件交给应用后由使用方负责清理，
+ * 未交给应用的帧由处理方通过 {@link RpcFrame#discardBlobs(List)} 删除
+ * <p>
+ * 每个帧按前两个字节识别格式：紧凑帧只读取固定帧头即可切分，帧体由 compactParser 还原为同一种消息，
+ * 并把连接标记为紧凑帧，此后本端写出的消息也使用紧凑帧。超过最大帧大小的紧凑帧无法跳过，直接以异常关闭连接
+ *
+ * @param <M> protobuf 消息类型
+ */
+public class RpcFrameDecoder<M> extends LengthFieldBasedFrameDecoder {
+
+    public static final String PAYLOAD_KEY = "transport.payload";
+    public static final int DEFAULT_PAYLOAD = 8 * 1024 * 1024;
+    public static final String BLOB_DIR_KEY = "transport.blob.dir";
+    public static final String BLOB_MAX_KEY = "transport.blob.max";
+    public static final long DEFAULT_BLOB_MAX = 1L << 30;
+
+    private static final int LENGTH_FIELD_LENGTH = 4;
+
+    private final Parser<M> parser;
+    private final Function<ByteBuf, M> compactParser;
+    private final Function<M, List<RpcProto.Blob>> blobsOf;
+    private final Path blobDir;
+    private final int maxPayload;
+    private final long maxBlob;
+
+    // 正在接收大对象的帧，仅在 IO 线程访问
+    private RpcFrame<M> pendingFrame;
+    private List<RpcProto.Blob> pendingBlobs;
+    private List<Object> receivedBlobs;
+    private Path blobPath;
+    private FileChannel blobChannel;
+    private long blobPosition;
+
+    public RpcFrameDecoder(Parser<M> parser, URL url) {
+        this(parser, null, message -> List.of(), url);
+    }
+
+    /**
+     * @param compactParser 紧凑帧的解码函数，为 null 表示不接受紧凑帧
+     */
+    public RpcFrameDecoder(Parser<M> parser, Function<ByteBuf, M> compactParser,
+                           Function<M, List<RpcProto.Blob>> blobsOf, URL url) {
+        this(parser, compactParser, blobsOf, url.getParameter(PAYLOAD_KEY, DEFAULT_PAYLOAD), url.getParameter(BLOB_DIR_KEY),
+                Long.parseLong(url.getParameter(BLOB_MAX_KEY, String.valueOf(DEFAULT_BLOB_MAX))));
+    }
+
+    public RpcFrameDecoder(Parser<M> parser, int maxPayload) {
+        this(parser, null, message -> List.of(), maxPayload, null, DEFAULT_BLOB_MAX);
+    }
+
+    private RpcFrameDecoder(Parser<M> parser, Function<ByteBuf, M> compactParser,
+                            Function<M, List<RpcProto.Blob>> blobsOf, int maxPayload, String blobDir, long maxBlob) {
+        super(maxPayload + LENGTH_FIELD_LENGTH, 0, LENGTH_FIELD_LENGTH, 0, LENGTH_FIELD_LENGTH);
+        this.parser = parser;
+        this.compactParser = compactParser;
+        this.blobsOf = blobsOf;
+        this.blobDir = blobDir != null ? Path.of(blobDir) : Path.of(System.getProperty("java.io.tmpdir"));
+        this.maxPayload = maxPayload;
+        this.maxBlob = maxBlob;
+    }
+
+    @Override
+    protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+        if (pendingFrame != null) {
+            return readBlobs(in);
+        }
+        if (compactParser != null && CompactFrame.startsWithMagic(in)) {
+            return decodeCompact(ctx, in);
+        }
+        // 父类返回 cumulation 的 retainedSlice，本身不复制
+        ByteBuf frame = (ByteBuf) super.decode(ctx, in);
+        if (frame == null) {
+            return null;
+        }
+        M message;
+        try {
+            // NioByteString 视为不可变，配合 enableAliasing 后 bytes 字段直接引用帧内存
+            CodedInputStream input = UnsafeByteOperations.unsafeWrap(frame.nioBuffer()).newCodedInput();
+            input.enableAliasing(true);
+            message = parser.parseFrom(input);
+        } catch (Exception e) {
+            frame.release();
+            throw e;
+        }
+        List<RpcProto.Blob> blobs = blobsOf.apply(message);
+        if (blobs.isEmpty()) {
+            return new RpcFrame<>(message, frame);
+        }
+        // 大对象长度来自对端，落盘前校验，避免单个帧写满临时目录
+        for (RpcProto.Blob blob : blobs) {
+            if (blob.getLength() < 0 || blob.getLength() > maxBlob) {
+                frame.release();
+                throw new TooLongFrameException("Blob length " + blob.getLength() + " exceeds limit " + maxBlob);
+            }
+        }
+        pendingFrame = new RpcFrame<>(message, frame);
+        pendingBlobs = blobs;
+        receivedBlobs = new ArrayList<>(blobs.size());
+        return readBlobs(in);
+    }
+
+    /**
+     * 紧凑帧：帧头定长，读出帧体长度即可切分，不经过长度字段解码器
+     */
+    private RpcFrame<M> decodeCompact(ChannelHandlerContext ctx, ByteBuf in) {
+        int bodyLength = CompactFrame.peekBodyLength(in);
+        if (bodyLength < 0) {
+            return null;
+        }
+        if (bodyLength > maxPayload) {
+            throw new TooLongFrameException("Compact frame body " + bodyLength + " exceeds limit " + maxPayload);
+        }
+        int frameLength = CompactFrame.HEADER_LENGTH + bodyLength;
+        if (in.readableBytes() < frameLength) {
+            return null;
+        }
+        ByteBuf frame = in.retainedSlice(in.readerIndex(), frameLength);
+        in.skipBytes(frameLength);
+        M message;
+        try {
+            message = compactParser.apply(frame);
+        } catch (RuntimeException e) {
+            frame.release();
+            throw e;
+        }
+        CompactFrame.enable(ctx.channel());
+        return new RpcFrame<>(message, frame);
+    }
+
+    /**
+     * 把已到达的大对象字节写入临时文件
+     *
+     * @return 全部大对象接收完成时返回带大对象的帧，否则返回 null 等待更多数据
+     */
+    private RpcFrame<M> readBlobs(ByteBuf in) throws IOException {
+        while (receivedBlobs.size() < pendingBlobs.size()) {
+            RpcProto.Blob blob = pendingBlobs.get(receivedBlobs.size());
+            if (blobChannel == null) {
+                blobPath = Files.createTempFile(blobDir, "matrix-blob-", ".tmp");
+                blobChannel = FileChannel.open(blobPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                blobPosition = 0;
+            }
+            long remaining = blob.getLength() - blobPosition;
+            int readable = (int) Math.min(in.readableBytes(), remaining);
+            if (readable > 0) {
+                blobPosition += in.readBytes(blobChannel, blobPosition, readable);
+            }
+            if (blobPosition < blob.getLength()) {
+                return null;
+            }
+            receivedBlobs.add(finishBlob(blob));
+        }
+        RpcFrame<M> frame = pendingFrame.withBlobs(List.copyOf(receivedBlobs));
+        pendingFrame = null;
+        pendingBlobs = null;
+        receivedBlobs = null;
+        return frame;
+    }
+
+    private Object finishBlob(RpcProto.Blob blob) throws IOException {
+        FileChannel channel = blobChannel;
+        Path path = blobPath;
+        blobChannel = null;
+        blobPath = null;
+        if (!blob.getBuffer()) {
+            channel.close();
+            return path;
+        }
+        try (channel) {
+            // 映射在文件删除后依然有效，由 GC 回收映射时释放磁盘空间
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, blob.getLength());
+        } finally {
+            deleteQuietly(path);
+        }
+    }
+
+    /**
+     * 连接关闭时丢弃未接收完的帧及其临时文件
+     */
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+        if (pendingFrame != null) {
+            pendingFrame.release();
+            for (Object received : receivedBlobs) {
+                if (received instanceof Path path) {
+                    deleteQuietly(path);
+                }
+            }
+            pendingFrame = null;
+            pendingBlobs = null;
+            receivedBlobs = null;
+        }
+        if (blobChannel != null) {
+            blobChannel.close();
+            deleteQuietly(blobPath);
+            blobChannel = null;
+            blobPath = null;
+        }
+        super.handlerRemoved0(ctx);
+    }
+
+    static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // Windows 上已映射的文件无法删除，退出时再清理
+            path.toFile().deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package io.homeey.matrix.rpc.transport.netty.codec;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
+import io.homeey.matrix.rpc.common.URL;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.EncoderException;
+import io.netty.handler.codec.MessageToByteEncoder;
+
+/**
+ * RPC 帧编码器：[int length][protobuf bytes]，连接启用紧凑帧时改写为 {@link CompactFrame}
+ * <p>
+ * 按 {@code getSerializedSize()} 一次性分配精确大小的池化 direct 缓冲区，
+ * 通过 {@link CodedOutputStream} 直接写入其内存，不经过 {@code toByteArray()} 的堆上中转，
+ * 内核写出时直接读取堆外内存。超过 {@code transport.payload} 的消息直接拒绝
+ */
+public class RpcFrameEncoder extends MessageToByteEncoder<MessageLite> {
+
+    private static final int LENGTH_FIELD_LENGTH = 4;
+
+    private final int maxPayload;
+
+    public RpcFrameEncoder(URL url) {
+        this(url.getParameter(RpcFrameDecoder.PAYLOAD_KEY, RpcFrameDecoder.DEFAULT_PAYLOAD));
+    }
+
+    public RpcFrameEncoder(int maxPayload) {
+        super(MessageLite.class, true);
+        this.maxPayload = maxPayload;
+    }
+
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, MessageLite message, boolean preferDirect) {
+        boolean compact = isCompact(ctx, message);
+        // 序列化大小在消息内部缓存，encode 中再次获取没有额外开销
+        int size = compact ? CompactFrame.bodyLength(message) : message.getSerializedSize();
+        if (size > maxPayload) {
+            throw new EncoderException("Payload size " + size + " exceeds limit " + maxPayload);
+        }
+        return ctx.alloc().ioBuffer((compact ? CompactFrame.HEADER_LENGTH : LENGTH_FIELD_LENGTH) + size);
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, MessageLite message, ByteBuf out) throws Exception {
+        if (isCompact(ctx, message)) {
+            CompactFrame.encode(message, out);
+            return;
+        }
+        int size = message.getSerializedSize();
+        out.ensureWritable(LENGTH_FIELD_LENGTH + size);
+        out.writeInt(size);
+
+        int index = out.writerIndex();
+        CodedOutputStream output = CodedOutputStream.newInstance(out.nioBuffer(index, size));
+        message.writeTo(output);
+        output.checkNoSpaceLeft();
+        out.writerIndex(index + size);
+    }
+
+    private static boolean isCompact(ChannelHandlerContext ctx, MessageLite message) {
+        return CompactFrame.isEnabled(ctx.channel()) && CompactFrame.supports(message);
+    }
+}
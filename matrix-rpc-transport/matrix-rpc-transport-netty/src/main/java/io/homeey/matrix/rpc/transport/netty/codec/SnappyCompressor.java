@@ -0,0 +1,72 @@
+package io.homeey.matrix.rpc.transport.netty.codec;
+
+import io.homeey.matrix.rpc.codec.api.Compressor;
+import io.homeey.matrix.rpc.spi.Activate;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.compression.Snappy;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 基于 Netty Snappy 的快速压缩实现（raw snappy 格式，自带原始长度前导）
+ * <p>
+ * 解压前按前导中的原始长度校验上限并分配固定容量的结果缓冲区。
+ * 压缩率低于 deflate，但 CPU 开销小一个数量级，适合跨机房等带宽敏感但延迟也敏感的链路
+ */
+@Activate
+public class SnappyCompressor implements Compressor {
+
+    @Override
+    public byte[] compress(byte[] data) {
+        ByteBuf in = Unpooled.wrappedBuffer(data);
+        ByteBuf out = Unpooled.buffer(data.length / 2 + 64);
+        try {
+            new Snappy().encode(in, out, data.length);
+            return ByteBufUtil.getBytes(out);
+        } finally {
+            out.release();
+        }
+    }
+
+    @Override
+    public byte[] decompress(ByteBuffer data, int maxLength) {
+        int originalLength = originalLength(data);
+        if (originalLength > maxLength) {
+            throw new IllegalArgumentException("Snappy payload length " + originalLength + " exceeds limit " + maxLength);
+        }
+        ByteBuf in = Unpooled.wrappedBuffer(data.duplicate());
+        // 容量上限即声明的原始长度，解压出的数据超出时直接失败
+        ByteBuf out = Unpooled.buffer(originalLength, originalLength);
+        try {
+            new Snappy().decode(in, out);
+            return ByteBufUtil.getBytes(out);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Corrupted snappy payload", e);
+        } finally {
+            out.release();
+        }
+    }
+
+    /**
+     * 读取 raw snappy 的前导：varint 编码的原始长度，最多 5 个字节
+     */
+    private static int originalLength(ByteBuffer data) {
+        int result = 0;
+        for (int i = 0, position = data.position(); i < 5; i++, position++) {
+            if (position >= data.limit()) {
+                break;
+            }
+            int b = data.get(position) & 0xFF;
+            result |= (b & 0x7F) << (7 * i);
+            if ((b & 0x80) == 0) {
+                if (result < 0) {
+                    break;
+                }
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Invalid snappy payload length");
+    }
+}
@@ -0,0 +1,45 @@
+package io.homeey.matrix.rpc.transport.netty.server;
+
+import io.homeey.matrix.rpc.common.URL;
+
+/**
+ * 服务端请求派发策略
+ * <p>
+ * 通过 URL 参数 {@code dispatcher} 选择：
+ * <ul>
+ *   <li>direct：解码、业务执行全部在 IO 线程完成，仅适合纯异步或极短耗时的服务</li>
+ *   <li>all：IO 线程只负责切帧，参数解码和业务执行都派发到业务线程池（默认）</li>
+ *   <li>execution：IO 线程完成参数解码，业务执行派发到业务线程池</li>
+ * </ul>
+ * 业务线程池由 {@code threadpool} / {@code threads} / {@code queues} 配置，
+ * 饱和时立即回写 SERVER_OVERLOADED 响应
+ */
+enum Dispatcher {
+
+    DIRECT("direct"),
+    ALL("all"),
+    EXECUTION("execution");
+
+    static final String DISPATCHER_KEY = "dispatcher";
+
+    private final String value;
+
+    Dispatcher(String value) {
+        this.value = value;
+    }
+
+    static Dispatcher from(URL url) {
+        String dispatcher = url.getParameter(DISPATCHER_KEY, ALL.value);
+        for (Dispatcher candidate : values()) {
+            if (candidate.value.equalsIgnoreCase(dispatcher)) {
+                return candidate;
+            }
+        }
+        System.err.println("[Matrix RPC] Unknown dispatcher '" + dispatcher + "', fallback to all");
+        return ALL;
+    }
+
+    boolean usesExecutor() {
+        return this != DIRECT;
+    }
+}
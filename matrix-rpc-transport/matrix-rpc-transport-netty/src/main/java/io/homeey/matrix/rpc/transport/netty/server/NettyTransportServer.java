@@ -1,38 +1,83 @@
 package io.homeey.matrix.rpc.transport.netty.server;
 
-import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import io.homeey.matrix.rpc.codec.api.Codec;
 import io.homeey.matrix.rpc.codec.protobuf.RpcProto;
 import io.homeey.matrix.rpc.common.Result;
+import io.homeey.matrix.rpc.common.RpcException;
+import io.homeey.matrix.rpc.common.ThreadPools;
 import io.homeey.matrix.rpc.common.URL;
 import io.homeey.matrix.rpc.core.Invocation;
+import io.homeey.matrix.rpc.core.SignatureCache;
 import io.homeey.matrix.rpc.core.SimpleInvocation;
 import io.homeey.matrix.rpc.spi.Activate;
 import io.homeey.matrix.rpc.spi.ExtensionLoader;
 import io.homeey.matrix.rpc.transport.api.RequestHandler;
+import io.homeey.matrix.rpc.transport.api.ServiceMethod;
 import io.homeey.matrix.rpc.transport.api.TransportServer;
+import io.homeey.matrix.rpc.transport.netty.FlushBatchingHandler;
+import io.homeey.matrix.rpc.transport.netty.IoTransport;
+import io.homeey.matrix.rpc.transport.netty.TransportOptions;
+import io.homeey.matrix.rpc.transport.netty.codec.BlobFrame;
+import io.homeey.matrix.rpc.transport.netty.codec.BlobFrameEncoder;
+import io.homeey.matrix.rpc.transport.netty.codec.CompactFrame;
+import io.homeey.matrix.rpc.transport.netty.codec.PayloadCompression;
+import io.homeey.matrix.rpc.transport.netty.codec.RpcFrame;
+import io.homeey.matrix.rpc.transport.netty.codec.RpcFrameDecoder;
+import io.homeey.matrix.rpc.transport.netty.codec.RpcFrameEncoder;
+import io.homeey.matrix.rpc.transport.netty.stream.InboundStream;
+import io.homeey.matrix.rpc.transport.netty.stream.OutboundStream;
 import io.netty.bootstrap.ServerBootstrap;
-import io.netty.buffer.ByteBuf;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.ByteToMessageDecoder;
-import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.DefaultThreadFactory;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 
+/**
+ * 基于 Netty 的传输服务端
+ * <p>
+ * IO 传输由 {@link IoTransport} 决定；使用原生传输时可通过 {@code transport.acceptors}
+ * 开启 SO_REUSEPORT 并绑定多个 acceptor channel，由内核在多个 acceptor 之间分摊连接。
+ * 请求按 {@link Dispatcher} 策略派发到有界业务线程池，业务代码不占用 IO 线程。
+ * 响应写缓冲超过高水位时暂停读取该连接，回落到低水位后恢复。
+ * 超过 {@code heartbeat.timeout} 未收到任何数据（包括心跳）的连接会被主动关闭。
+ * 配置了 {@code unix.path} 时同时监听该 Unix domain socket，同机消费者经由它绕过 TCP 协议栈。
+ * 返回 {@link Flow.Publisher} 的方法以流的方式应答，只在消费端授予 credit 后才向 Publisher 请求元素。
+ * 消费端握手时下发当前导出的方法表，此后携带方法 ID 的请求按数组下标取得预先解析好的方法，不再加载参数类型
+ */
 @Activate(order = 100)
 public class NettyTransportServer implements TransportServer {
 
+    private static final String ACCEPTORS_KEY = "transport.acceptors";
+
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
-    private Channel serverChannel;
+    private final List<Channel> serverChannels = new ArrayList<>();
+    private Path domainSocketPath;
     private final AtomicBoolean started = new AtomicBoolean(false);
     private RequestHandler requestHandler;
+    private Dispatcher dispatcher;
+    private ExecutorService executor;
+    private ExecutorService batchExecutor;
+    private PayloadCompression compression;
+    private int maxPayload;
+    private SignatureCache signatures;
     private final Codec codec; // 使用 SPI 获取序列化器
 
     public NettyTransportServer() {
@@ -48,114 +93,482 @@ public class NettyTransportServer implements TransportServer {
         }
 
         this.requestHandler = requestHandler;
+        this.dispatcher = Dispatcher.from(url);
+        this.compression = PayloadCompression.from(url);
+        this.maxPayload = url.getParameter(RpcFrameDecoder.PAYLOAD_KEY, RpcFrameDecoder.DEFAULT_PAYLOAD);
+        // 参数类型按导出服务所在的 ClassLoader 解析，每种签名只加载一次
+        this.signatures = SignatureCache.forContextClassLoader();
+        if (dispatcher.usesExecutor()) {
+            this.executor = ThreadPools.newExecutor("matrix-server-handler", url);
+            this.batchExecutor = executor;
+        } else {
+            // direct 模式没有业务线程池，批量调用的子请求改由虚拟线程并行执行
+            this.batchExecutor = ThreadPools.newExecutor("matrix-server-batch", ThreadPools.VIRTUAL,
+                    ThreadPools.DEFAULT_VIRTUAL_THREADS, 0);
+        }
         int port = url.getPort();
+        int idleTimeout = TransportOptions.heartbeatTimeout(url);
+
+        IoTransport ioTransport = IoTransport.from(url);
+        ChannelOption<Boolean> reusePort = ioTransport.reusePortOption();
+        int acceptors = Math.max(1, url.getParameter(ACCEPTORS_KEY, 1));
+        if (acceptors > 1 && reusePort == null) {
+            System.err.println("[Matrix RPC] SO_REUSEPORT requires a native transport, using 1 acceptor");
+            acceptors = 1;
+        }
 
-        bossGroup = new NioEventLoopGroup(1);
-        workerGroup = new NioEventLoopGroup();
+        bossGroup = ioTransport.newEventLoopGroup(acceptors, new DefaultThreadFactory("matrix-server-boss"));
+        workerGroup = ioTransport.newEventLoopGroup(0, new DefaultThreadFactory("matrix-server-worker"));
+
+        // TCP 与 domain socket 两个入口共用同一套 pipeline
+        ChannelInitializer<Channel> childHandler = new ChannelInitializer<>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                ChannelPipeline pipeline = ch.pipeline();
+                if (idleTimeout > 0) {
+                    pipeline.addLast(new IdleStateHandler(idleTimeout, 0, 0, TimeUnit.MILLISECONDS));
+                }
+                // 可选：合并同一 tick 内及业务线程并发写回的响应 flush
+                FlushBatchingHandler flushBatching = FlushBatchingHandler.from(url);
+                if (flushBatching != null) {
+                    pipeline.addLast(flushBatching);
+                }
+                // 同时接受 protobuf 帧与紧凑帧，响应沿用消费端选择的格式
+                pipeline.addLast(new RpcFrameDecoder<>(RpcProto.RpcRequest.parser(),
+                        CompactFrame::decodeRequest, RpcProto.RpcRequest::getBlobsList, url));
+                pipeline.addLast(new RpcFrameEncoder(url));
+                pipeline.addLast(new BlobFrameEncoder());
+                pipeline.addLast(new RpcServerHandler());
+            }
+        };
 
         try {
             ServerBootstrap bootstrap = new ServerBootstrap();
             bootstrap.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
-                    .childHandler(new ChannelInitializer<SocketChannel>() {
-                        @Override
-                        protected void initChannel(SocketChannel ch) {
-                            ChannelPipeline pipeline = ch.pipeline();
-                            pipeline.addLast(new RpcRequestDecoder());
-                            pipeline.addLast(new RpcResponseEncoder());
-                            pipeline.addLast(new RpcServerHandler());
-                        }
-                    })
+                    .channel(ioTransport.serverSocketChannelClass())
+                    .childHandler(childHandler)
                     .option(ChannelOption.SO_BACKLOG, 1024)
                     .childOption(ChannelOption.SO_KEEPALIVE, true)
-                    .childOption(ChannelOption.TCP_NODELAY, true);
+                    .childOption(ChannelOption.TCP_NODELAY, true)
+                    .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, TransportOptions.writeBufferWaterMark(url));
+            if (acceptors > 1) {
+                bootstrap.option(reusePort, true);
+            }
 
-            serverChannel = bootstrap.bind(port).sync().channel();
+            // 开启 SO_REUSEPORT 时同一端口绑定多个 acceptor，每个 channel 注册到不同的 boss 线程
+            for (int i = 0; i < acceptors; i++) {
+                serverChannels.add(bootstrap.bind(port).sync().channel());
+            }
+            bindDomainSocket(url, ioTransport, childHandler);
             started.set(true);
-            System.out.println("[Matrix RPC] Netty server started on port: " + port);
+            System.out.println("[Matrix RPC] Netty server started on port: " + port
+                    + " (io: " + ioTransport.name().toLowerCase() + ", acceptors: " + acceptors
+                    + ", dispatcher: " + dispatcher.name().toLowerCase() + ")");
         } catch (InterruptedException e) {
             throw new RuntimeException("Failed to start Netty server on port: " + port, e);
         }
     }
 
+    /**
+     * 配置了 {@code unix.path} 时在 TCP 端口之外再监听一个 Unix domain socket，供同机消费者使用
+     */
+    private void bindDomainSocket(URL url, IoTransport ioTransport, ChannelInitializer<Channel> childHandler)
+            throws InterruptedException {
+        String unixPath = url.getParameter(TransportOptions.UNIX_PATH_KEY);
+        if (unixPath == null || unixPath.isEmpty()) {
+            return;
+        }
+        if (!ioTransport.supportsDomainSocket()) {
+            System.err.println("[Matrix RPC] Unix domain socket is not supported by transport: "
+                    + ioTransport.name().toLowerCase() + ", serving TCP only");
+            return;
+        }
+        try {
+            // 上次进程异常退出遗留的 socket 文件会导致 bind 失败
+            Files.deleteIfExists(Path.of(unixPath));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to remove stale domain socket: " + unixPath, e);
+        }
+        ServerBootstrap bootstrap = new ServerBootstrap();
+        bootstrap.group(bossGroup, workerGroup)
+                .channel(ioTransport.serverDomainSocketChannelClass())
+                .childHandler(childHandler)
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, TransportOptions.writeBufferWaterMark(url));
+        serverChannels.add(bootstrap.bind(ioTransport.domainSocketAddress(unixPath)).sync().channel());
+        this.domainSocketPath = Path.of(unixPath);
+        System.out.println("[Matrix RPC] Netty server listening on domain socket: " + unixPath);
+    }
+
     @Override
     public synchronized void close() {
         if (!started.getAndSet(false)) {
             return;
         }
 
-        if (serverChannel != null) {
+        for (Channel serverChannel : serverChannels) {
             serverChannel.close();
         }
+        serverChannels.clear();
+        if (domainSocketPath != null) {
+            try {
+                Files.deleteIfExists(domainSocketPath);
+            } catch (IOException e) {
+                System.err.println("[Matrix RPC] Failed to remove domain socket: " + domainSocketPath);
+            }
+            domainSocketPath = null;
+        }
         if (workerGroup != null) {
             workerGroup.shutdownGracefully();
         }
         if (bossGroup != null) {
             bossGroup.shutdownGracefully();
         }
+        if (batchExecutor != null && batchExecutor != executor) {
+            batchExecutor.shutdown();
+        }
+        batchExecutor = null;
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
         System.out.println("[Matrix RPC] Netty server stopped");
     }
 
     // =============== 内部处理器 ===============
 
-    private static class RpcRequestDecoder extends ByteToMessageDecoder {
+    private class RpcServerHandler extends SimpleChannelInboundHandler<RpcFrame<RpcProto.RpcRequest>> {
+        /**
+         * 当前连接上进行中的流，按 requestId 路由后续帧
+         */
+        private final Map<Long, ServerStream> streams = new ConcurrentHashMap<>();
+        /**
+         * 握手时下发的方法表，方法 ID 为下标加 1；在 IO 线程写入，业务线程解码参数时读取
+         */
+        private volatile ServiceMethod[] methodTable = new ServiceMethod[0];
+
         @Override
-        protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
-            if (in.readableBytes() < 4) {
+        protected void channelRead0(ChannelHandlerContext ctx, RpcFrame<RpcProto.RpcRequest> frame) {
+            RpcProto.RpcRequest request = frame.message();
+            long requestId = request.getRequestId();
+            if (request.getHeartbeat()) {
+                // 心跳直接在 IO 线程应答，不占用业务线程
+                ctx.writeAndFlush(RpcProto.RpcResponse.newBuilder()
+                        .setRequestId(requestId)
+                        .setHeartbeat(true)
+                        .build());
+                return;
+            }
+            if (request.getHandshake()) {
+                handleHandshake(ctx, request);
+                return;
+            }
+            if (request.getStream() != RpcProto.StreamFrame.UNARY) {
+                handleStreamFrame(ctx, request);
+                return;
+            }
+            if (request.getBatchCount() > 0) {
+                handleBatch(ctx, frame);
                 return;
             }
+            switch (dispatcher) {
+                case DIRECT -> handleRequest(ctx, request, frame.blobs());
+                case ALL -> {
+                    // 参数在业务线程解码，帧需要保留到解码完成；SimpleChannelInboundHandler 只释放自己那一份引用
+                    frame.retain();
+                    dispatch(ctx, requestId, () -> {
+                        try {
+                            handleRequest(ctx, request, frame.blobs());
+                        } finally {
+                            frame.release();
+                        }
+                    }, () -> {
+                        frame.release();
+                        RpcFrame.discardBlobs(frame.blobs());
+                    });
+                }
+                case EXECUTION -> {
+                    Invocation invocation;
+                    try {
+                        invocation = convertToInvocation(request, frame.blobs());
+                    } catch (Exception e) {
+                        RpcFrame.discardBlobs(frame.blobs());
+                        ctx.writeAndFlush(buildErrorResponse(requestId, e));
+                        return;
+                    }
+                    dispatch(ctx, requestId, () -> invoke(ctx, requestId, invocation, frame.blobs()),
+                            () -> RpcFrame.discardBlobs(frame.blobs()));
+                }
+            }
+        }
+
+        /**
+         * 握手：固定本连接的方法表并下发给消费端。之后导出的服务不在表中，消费端对其仍发送完整的方法信息。
+         * 消费端请求紧凑帧时在响应中确认，消费端收到确认后才开始发送紧凑帧
+         */
+        private void handleHandshake(ChannelHandlerContext ctx, RpcProto.RpcRequest request) {
+            ServiceMethod[] methods = requestHandler.methods().toArray(ServiceMethod[]::new);
+            RpcProto.RpcResponse.Builder builder = RpcProto.RpcResponse.newBuilder()
+                    .setRequestId(request.getRequestId())
+                    .setHandshake(true)
+                    .setCompactFrame(request.getCompactFrame());
+            for (ServiceMethod method : methods) {
+                RpcProto.MethodEntry.Builder entry = RpcProto.MethodEntry.newBuilder()
+                        .setServiceName(method.serviceName())
+                        .setMethodName(method.methodName());
+                for (Class<?> parameterType : method.parameterTypes()) {
+                    entry.addParameterTypes(parameterType.getName());
+                }
+                builder.addMethods(entry);
+            }
+            methodTable = methods;
+            ctx.writeAndFlush(builder.build());
+        }
 
-            in.markReaderIndex();
-            int dataLength = in.readInt();
+        /**
+         * 派发到业务线程池，饱和时立即回写 SERVER_OVERLOADED，不在 IO 线程排队等待
+         */
+        private void dispatch(ChannelHandlerContext ctx, long requestId, Runnable task, Runnable onReject) {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                if (onReject != null) {
+                    onReject.run();
+                }
+                ctx.writeAndFlush(buildErrorResponse(requestId,
+                        new RpcException(RpcException.SERVER_OVERLOADED, "Server overloaded, request rejected")));
+            }
+        }
 
-            if (in.readableBytes() < dataLength) {
-                in.resetReaderIndex();
+        private void handleRequest(ChannelHandlerContext ctx, RpcProto.RpcRequest request, List<Object> blobs) {
+            long requestId = request.getRequestId();
+            Invocation invocation;
+            try {
+                // 将Protobuf请求转为Invocation，参数解码完成后帧即可释放
+                invocation = convertToInvocation(request, blobs);
+            } catch (Exception e) {
+                RpcFrame.discardBlobs(blobs);
+                ctx.writeAndFlush(buildErrorResponse(requestId, e));
                 return;
             }
+            invoke(ctx, requestId, invocation, blobs);
+        }
+
+        private void invoke(ChannelHandlerContext ctx, long requestId, Invocation invocation, List<Object> blobs) {
+            execute(requestId, invocation, blobs).thenAccept(response -> writeResponse(ctx, requestId, response));
+        }
+
+        /**
+         * 执行调用并构建响应（RpcResponse，大对象返回值为 {@link BlobFrame}），待结果完成后才完成，
+         * 异步服务不会占住当前线程；返回的 Future 不会异常完成
+         */
+        private CompletableFuture<Object> execute(long requestId, Invocation invocation) {
+            return execute(requestId, invocation, List.of());
+        }
 
-            byte[] data = new byte[dataLength];
-            in.readBytes(data);
+        /**
+         * @param blobs 请求携带的大对象；请求在执行业务逻辑前被拒绝时应用拿不到其中的 Path，由此处删除
+         */
+        private CompletableFuture<Object> execute(long requestId, Invocation invocation, List<Object> blobs) {
             try {
-                out.add(RpcProto.RpcRequest.parseFrom(data));
+                return requestHandler.handleAsync(invocation).toCompletableFuture().handle((result, error) -> {
+                    if (!blobs.isEmpty() && rejected(error != null ? error : result.getException())) {
+                        RpcFrame.discardBlobs(blobs);
+                    }
+                    return error != null ? buildErrorResponse(requestId, error) : buildReply(requestId, result);
+                });
             } catch (Exception e) {
-                throw new RuntimeException("Failed to decode RpcRequest", e);
+                RpcFrame.discardBlobs(blobs);
+                return CompletableFuture.completedFuture(buildErrorResponse(requestId, e));
             }
         }
-    }
 
-    private static class RpcResponseEncoder extends MessageToByteEncoder<RpcProto.RpcResponse> {
-        @Override
-        protected void encode(ChannelHandlerContext ctx, RpcProto.RpcResponse response, ByteBuf out) {
-            byte[] data = response.toByteArray();
-            out.writeInt(data.length);
-            out.writeBytes(data);
+        /**
+         * 请求是否在执行业务逻辑之前就被拒绝（线程池或隔离舱饱和）
+         */
+        private boolean rejected(Throwable error) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            return cause instanceof RpcException rpcException && rpcException.isRetryable();
         }
-    }
 
-    private class RpcServerHandler extends SimpleChannelInboundHandler<RpcProto.RpcRequest> {
-        @Override
-        protected void channelRead0(ChannelHandlerContext ctx, RpcProto.RpcRequest request) {
+        /**
+         * 批量调用：每个子请求独立派发到业务线程池并行执行，参数解码的位置：
+         * all / direct 在业务线程解码（direct 没有业务线程池，使用虚拟线程），execution 在 IO 线程解码。
+         * 每个子调用都经过完整的 Provider Filter 链；全部完成后在一个帧中写回所有结果，
+         * 单个子调用失败或被拒绝只影响它自己的结果
+         */
+        private void handleBatch(ChannelHandlerContext ctx, RpcFrame<RpcProto.RpcRequest> frame) {
+            RpcProto.RpcRequest request = frame.message();
             long requestId = request.getRequestId();
+            List<CompletableFuture<RpcProto.RpcResponse>> responses = new ArrayList<>(request.getBatchCount());
+            for (RpcProto.RpcRequest entry : request.getBatchList()) {
+                responses.add(executeBatchEntry(frame, entry));
+            }
+            CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new)).thenRun(() -> {
+                RpcProto.RpcResponse.Builder builder = RpcProto.RpcResponse.newBuilder()
+                        .setRequestId(requestId);
+                for (CompletableFuture<RpcProto.RpcResponse> response : responses) {
+                    builder.addBatch(response.join());
+                }
+                writeResponse(ctx, requestId, builder.build());
+            });
+        }
+
+        private CompletableFuture<RpcProto.RpcResponse> executeBatchEntry(RpcFrame<RpcProto.RpcRequest> frame,
+                                                                          RpcProto.RpcRequest entry) {
+            long entryId = entry.getRequestId();
+            CompletableFuture<RpcProto.RpcResponse> future = new CompletableFuture<>();
+            boolean decodeInWorker = dispatcher != Dispatcher.EXECUTION;
+            Runnable task;
+            if (decodeInWorker) {
+                // 子请求的参数引用帧缓冲区，帧需要保留到该子请求解码完成
+                frame.retain();
+                task = () -> {
+                    Invocation invocation;
+                    try {
+                        invocation = convertToInvocation(entry, List.of());
+                    } catch (Exception e) {
+                        future.complete(buildErrorResponse(entryId, e));
+                        return;
+                    } finally {
+                        frame.release();
+                    }
+                    executeBatchEntry(entryId, invocation, future);
+                };
+            } else {
+                Invocation invocation;
+                try {
+                    invocation = convertToInvocation(entry, List.of());
+                } catch (Exception e) {
+                    return CompletableFuture.completedFuture(buildErrorResponse(entryId, e));
+                }
+                task = () -> executeBatchEntry(entryId, invocation, future);
+            }
             try {
-                // 1. 将Protobuf请求转为Invocation
-                Invocation invocation = convertToInvocation(request);
+                batchExecutor.execute(task);
+            } catch (RejectedExecutionException e) {
+                if (decodeInWorker) {
+                    frame.release();
+                }
+                future.complete(buildErrorResponse(entryId,
+                        new RpcException(RpcException.SERVER_OVERLOADED, "Server overloaded, request rejected")));
+            }
+            return future;
+        }
 
-                // 2. 处理请求
-                Result result = requestHandler.handle(invocation);
+        private void executeBatchEntry(long entryId, Invocation invocation,
+                                       CompletableFuture<RpcProto.RpcResponse> future) {
+            execute(entryId, invocation).thenAccept(reply -> future.complete(batchEntryResponse(entryId, reply)));
+        }
 
-                // 3. 构建响应
-                RpcProto.RpcResponse response = buildResponse(requestId, result);
+        /**
+         * 流式调用帧：OPEN 建立流，其余帧按 requestId 路由到已建立的流，流结束后迟到的帧直接丢弃
+         */
+        private void handleStreamFrame(ChannelHandlerContext ctx, RpcProto.RpcRequest request) {
+            if (request.getStream() == RpcProto.StreamFrame.OPEN) {
+                openStream(ctx, request);
+                return;
+            }
+            ServerStream stream = streams.get(request.getRequestId());
+            if (stream == null) {
+                return;
+            }
+            switch (request.getStream()) {
+                case DATA -> stream.receive(request);
+                case COMPLETE -> stream.upstream().onComplete();
+                case ERROR -> stream.upstream().onError(new RpcException(request.getException()));
+                case CREDIT -> stream.outbound.addCredit(request.getCredit());
+                case CANCEL -> stream.close(new RpcException("Stream cancelled by consumer"));
+                default -> System.err.println("[Matrix RPC] Unexpected stream frame: " + request.getStream());
+            }
+        }
 
-                // 4. 发送响应
-                ctx.writeAndFlush(response);
+        /**
+         * 参数在 IO 线程解码，{@link Flow.Publisher} 类型的参数替换为接收上行元素的流；
+         * 业务方法在业务线程池执行，返回的 Publisher 由流订阅，元素按消费端授予的 credit 拉取
+         */
+        private void openStream(ChannelHandlerContext ctx, RpcProto.RpcRequest request) {
+            long requestId = request.getRequestId();
+            ServerStream stream = new ServerStream(ctx, requestId);
+            Invocation invocation;
+            try {
+                invocation = convertToInvocation(request, List.of(), stream::upstream);
             } catch (Exception e) {
-                // 构建错误响应
-                RpcProto.RpcResponse errorResponse = RpcProto.RpcResponse.newBuilder()
-                        .setRequestId(requestId)
-                        .setException("Internal error: " + e.getMessage())
+                ctx.writeAndFlush(stream.errorFrame(e));
+                return;
+            }
+            streams.put(requestId, stream);
+            if (executor == null) {
+                stream.start(invocation);
+                return;
+            }
+            try {
+                executor.execute(() -> stream.start(invocation));
+            } catch (RejectedExecutionException e) {
+                stream.error(new RpcException(RpcException.SERVER_OVERLOADED, "Server overloaded, stream rejected"));
+            }
+        }
+
+        /**
+         * 批量响应在一个帧中返回，无法携带跟随帧的大对象
+         */
+        private RpcProto.RpcResponse batchEntryResponse(long entryId, Object reply) {
+            return reply instanceof RpcProto.RpcResponse response ? response : buildErrorResponse(entryId,
+                    new RpcException("Blob results are not supported in batch calls"));
+        }
+
+        /**
+         * 写出响应；编码失败（如超过最大帧大小）时改为回写错误响应，避免调用方一直等到超时
+         */
+        private void writeResponse(ChannelHandlerContext ctx, long requestId, Object response) {
+            ctx.writeAndFlush(response).addListener((ChannelFutureListener) f -> {
+                if (!f.isSuccess() && f.channel().isActive()) {
+                    ctx.writeAndFlush(buildErrorResponse(requestId, f.cause()));
+                }
+            });
+        }
+
+        private RpcProto.RpcResponse buildErrorResponse(long requestId, Throwable error) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            RpcProto.RpcResponse.Builder builder = RpcProto.RpcResponse.newBuilder()
+                    .setRequestId(requestId);
+            if (cause instanceof RpcException rpcException && rpcException.getCode() != RpcException.UNKNOWN) {
+                // 带错误码的异常原样传回，消费端据此判断是否可重试
+                return builder.setStatus(rpcException.getCode())
+                        .setException(cause.getMessage())
                         .build();
-                ctx.writeAndFlush(errorResponse);
             }
+            return builder.setException("Internal error: " + cause.getMessage()).build();
+        }
+
+        /**
+         * 响应写不出去时停止读取新请求，把压力反馈到 TCP 窗口而不是堆积在出站缓冲中
+         */
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+            ctx.channel().config().setAutoRead(ctx.channel().isWritable());
+            super.channelWritabilityChanged(ctx);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            RpcException closed = new RpcException("Connection closed: " + ctx.channel().remoteAddress());
+            for (ServerStream stream : List.copyOf(streams.values())) {
+                stream.close(closed);
+            }
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+            if (evt instanceof IdleStateEvent) {
+                // 客户端在超时时间内没有任何请求或心跳，视为失联并释放连接
+                System.err.println("[Matrix RPC] Closing idle connection: " + ctx.channel().remoteAddress());
+                ctx.close();
+                return;
+            }
+            super.userEventTriggered(ctx, evt);
         }
 
         @Override
@@ -165,80 +578,77 @@ public class NettyTransportServer implements TransportServer {
             ctx.close();
         }
 
-        private Invocation convertToInvocation(RpcProto.RpcRequest request) {
+        private Invocation convertToInvocation(RpcProto.RpcRequest request, List<Object> blobs) {
+            return convertToInvocation(request, blobs, null);
+        }
+
+        /**
+         * @param blobs          解码器已落盘的大对象参数，与请求中 blobs 字段一一对应
+         * @param streamArgument 流式调用中 {@link Flow.Publisher} 类型参数的取值，普通调用为 null
+         */
+        private Invocation convertToInvocation(RpcProto.RpcRequest request, List<Object> blobs,
+                                               Supplier<Object> streamArgument) {
             try {
-                // 1. 获取参数类型
-                Class<?>[] parameterTypes = request.getParameterTypesList().stream()
-                        .map(this::loadClass)
-                        .toArray(Class<?>[]::new);
+                // 1. 获取参数类型：携带方法 ID 时直接取握手时解析好的方法
+                ServiceMethod method = request.getMethodId() != 0 ? resolveMethod(request.getMethodId()) : null;
+                Class<?>[] parameterTypes = method != null ? method.parameterTypes()
+                        : signatures.resolve(request.getParameterTypesList()).parameterTypes();
 
-                // 2. 反序列化参数 - 支持复杂对象类型
+                // 2. 反序列化参数 - 未压缩时直接读取帧缓冲区的切片，不复制为 byte[]
                 Object[] arguments = new Object[request.getArgumentsCount()];
                 for (int i = 0; i < arguments.length; i++) {
-                    byte[] argBytes = request.getArguments(i).toByteArray();
-                    arguments[i] = codec.decode(argBytes, parameterTypes[i]);
+                    if (streamArgument != null && parameterTypes[i] == Flow.Publisher.class) {
+                        arguments[i] = streamArgument.get();
+                        continue;
+                    }
+                    arguments[i] = codec.decode(
+                            PayloadCompression.payload(request.getArguments(i), request.getCompression(), maxPayload),
+                            parameterTypes[i]);
                 }
 
-                // 3. 转换 attachments
-                Map<String, String> attachments = request.getAttachmentsMap().entrySet().stream()
-                        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+                // 大对象参数不经过 Codec，直接使用临时文件 / 映射缓冲区
+                for (int i = 0; i < request.getBlobsCount(); i++) {
+                    arguments[request.getBlobs(i).getIndex()] = blobs.get(i);
+                }
 
-                return new SimpleInvocation(
-                        request.getServiceName(),
-                        request.getMethodName(),
+                // 4. 共享的参数类型数组和参数数组原样交给 Invoker，访问时不再复制
+                return SimpleInvocation.decoded(
+                        method != null ? method.serviceName() : request.getServiceName(),
+                        method != null ? method.methodName() : request.getMethodName(),
                         parameterTypes,
                         arguments,
-                        attachments
+                        // 3. attachments 是 protobuf 的只读 Map，直接使用而不复制
+                        request.getAttachmentsMap()
                 );
             } catch (Exception e) {
                 throw new RuntimeException("Failed to convert request to invocation", e);
             }
         }
 
-        private Class<?> loadClass(String className) {
-            // 支持基本类型
-            switch (className) {
-                case "java.lang.String":
-                    return String.class;
-                case "int":
-                    return int.class;
-                case "java.lang.Integer":
-                    return Integer.class;
-                case "long":
-                    return long.class;
-                case "java.lang.Long":
-                    return Long.class;
-                case "boolean":
-                    return boolean.class;
-                case "java.lang.Boolean":
-                    return Boolean.class;
-                case "double":
-                    return double.class;
-                case "java.lang.Double":
-                    return Double.class;
-                case "float":
-                    return float.class;
-                case "java.lang.Float":
-                    return Float.class;
-                case "byte":
-                    return byte.class;
-                case "java.lang.Byte":
-                    return Byte.class;
-                case "short":
-                    return short.class;
-                case "java.lang.Short":
-                    return Short.class;
-                case "char":
-                    return char.class;
-                case "java.lang.Character":
-                    return Character.class;
-                default:
-                    // 动态加载其他类型
-                    try {
-                        return Class.forName(className);
-                    } catch (ClassNotFoundException e) {
-                        throw new RuntimeException("Failed to load class: " + className, e);
-                    }
+        private ServiceMethod resolveMethod(int methodId) {
+            ServiceMethod[] table = methodTable;
+            if (methodId < 1 || methodId > table.length) {
+                throw new RpcException("Unknown method id: " + methodId);
+            }
+            return table[methodId - 1];
+        }
+
+        /**
+         * Path / ByteBuffer 返回值不经过 Codec，作为大对象跟随响应帧写出
+         */
+        private Object buildReply(long requestId, Result result) {
+            if (result.hasException() || !BlobFrame.isBlob(result.getValue())) {
+                return buildResponse(requestId, result);
+            }
+            try {
+                BlobFrame.Blob blob = BlobFrame.Blob.of(result.getValue());
+                RpcProto.RpcResponse response = RpcProto.RpcResponse.newBuilder()
+                        .setRequestId(requestId)
+                        .addBlobs(blob.describe(0))
+                        .build();
+                return new BlobFrame(response, List.of(blob));
+            } catch (Exception e) {
+                return buildErrorResponse(requestId, e);
             }
         }
 
@@ -246,18 +656,144 @@ public class NettyTransportServer implements TransportServer {
             RpcProto.RpcResponse.Builder builder = RpcProto.RpcResponse.newBuilder()
                     .setRequestId(requestId);
             if (result.hasException()) {
+                if (result.getException() instanceof RpcException rpcException) {
+                    builder.setStatus(rpcException.getCode());
+                }
                 builder.setException(result.getException().getMessage());
             } else {
                 try {
                     // 序列化返回值 - 支持复杂对象类型
-                    Object value = result.getValue(Object.class);
-                    byte[] serialized = codec.encode(value);
-                    builder.setResult(ByteString.copyFrom(serialized));
+                    setResult(builder, result.getValue(Object.class));
                 } catch (Exception e) {
                     builder.setException("Serialization error: " + e.getMessage());
                 }
             }
             return builder.build();
         }
+
+        private void setResult(RpcProto.RpcResponse.Builder builder, Object value) {
+            byte[] payload = codec.encode(value);
+            if (compression.shouldCompress(payload.length)) {
+                builder.setCompression(compression.name());
+                payload = compression.compress(payload);
+            }
+            builder.setResult(UnsafeByteOperations.unsafeWrap(payload));
+        }
+
+        /**
+         * 服务端的一个流：下行方向订阅业务方法返回的 Publisher，双向流时上行元素交给业务方法的 Publisher 参数
+         */
+        private final class ServerStream implements OutboundStream.Sink {
+            private final ChannelHandlerContext ctx;
+            private final long requestId;
+            private final OutboundStream outbound = new OutboundStream(this);
+            private InboundStream upstream;
+
+            ServerStream(ChannelHandlerContext ctx, long requestId) {
+                this.ctx = ctx;
+                this.requestId = requestId;
+            }
+
+            /**
+             * 上行流，在 IO 线程解码参数时创建；业务方订阅并 request 时向消费端授予 credit
+             */
+            InboundStream upstream() {
+                if (upstream == null) {
+                    upstream = new InboundStream(ctx.executor(),
+                            credit -> ctx.writeAndFlush(frame(RpcProto.StreamFrame.CREDIT).setCredit(credit).build()),
+                            () -> ctx.writeAndFlush(frame(RpcProto.StreamFrame.CANCEL).build()));
+                }
+                return upstream;
+            }
+
+            void receive(RpcProto.RpcRequest request) {
+                Object item;
+                try {
+                    item = request.getArgumentsCount() == 0 ? null : codec.decode(
+                            PayloadCompression.payload(request.getArguments(0), request.getCompression(), maxPayload), Object.class);
+                } catch (Exception e) {
+                    // 通知消费端停止上行，业务方以异常结束
+                    ctx.writeAndFlush(frame(RpcProto.StreamFrame.CANCEL).build());
+                    upstream().onError(new RpcException("Failed to decode RPC stream item", e));
+                    return;
+                }
+                upstream().onData(item);
+            }
+
+            void start(Invocation invocation) {
+                try {
+                    requestHandler.handleAsync(invocation).whenComplete((result, error) -> {
+                        if (error != null) {
+                            error(error);
+                        } else if (result.hasException()) {
+                            error(result.getException());
+                        } else if (result.getValue() instanceof Flow.Publisher<?> publisher) {
+                            publisher.subscribe(outbound);
+                        } else {
+                            error(new RpcException("Streaming method must return Flow.Publisher: "
+                                    + invocation.getServiceName() + "#" + invocation.methodName()));
+                        }
+                    });
+                } catch (Exception e) {
+                    error(e);
+                }
+            }
+
+            /**
+             * 消费端取消或连接断开：停止下行，上行流以异常结束
+             */
+            void close(Throwable cause) {
+                if (streams.remove(requestId, this)) {
+                    outbound.cancel();
+                    if (upstream != null) {
+                        upstream.onError(cause);
+                    }
+                }
+            }
+
+            @Override
+            public void next(Object item) {
+                RpcProto.RpcResponse.Builder data = frame(RpcProto.StreamFrame.DATA);
+                try {
+                    setResult(data, item);
+                } catch (Exception e) {
+                    outbound.cancel();
+                    error(new RpcException("Serialization error: " + e.getMessage(), e));
+                    return;
+                }
+                ctx.writeAndFlush(data.build()).addListener((ChannelFutureListener) f -> {
+                    if (!f.isSuccess() && f.channel().isActive()) {
+                        outbound.cancel();
+                        error(f.cause());
+                    }
+                });
+            }
+
+            @Override
+            public void complete() {
+                if (streams.remove(requestId, this)) {
+                    ctx.writeAndFlush(frame(RpcProto.StreamFrame.COMPLETE).build());
+                }
+            }
+
+            @Override
+            public void error(Throwable error) {
+                if (streams.remove(requestId, this)) {
+                    ctx.writeAndFlush(errorFrame(error));
+                }
+            }
+
+            RpcProto.RpcResponse errorFrame(Throwable error) {
+                return buildErrorResponse(requestId, error).toBuilder()
+                        .setStream(RpcProto.StreamFrame.ERROR)
+                        .build();
+            }
+
+            private RpcProto.RpcResponse.Builder frame(RpcProto.StreamFrame type) {
+                return RpcProto.RpcResponse.newBuilder()
+                        .setRequestId(requestId)
+                        .setStream(type);
+            }
+        }
     }
 }
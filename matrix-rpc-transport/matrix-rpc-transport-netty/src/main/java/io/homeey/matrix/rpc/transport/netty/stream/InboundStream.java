@@ -0,0 +1,190 @@
+package io.homeey.matrix.rpc.transport.netty.stream;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * 接收方向的流：把对端发来的元素交给本地订阅者
+ * <p>
+ * 基于 credit 的流控：订阅者 {@code request(n)} 时向对端授予 n 个 credit，对端只会在 credit 范围内发送，
+ * 因此本地缓冲的元素数不超过已授予但尚未消费的 credit。同一个 IO tick 内的多次 request 合并为一个 CREDIT 帧。
+ * <p>
+ * 元素由 IO 线程入队，在虚拟线程上串行投递给订阅者，订阅者的 onNext 可以阻塞而不影响 IO 线程。
+ * 只支持一个订阅者
+ */
+public final class InboundStream implements Flow.Publisher<Object>, Flow.Subscription {
+
+    /**
+     * 流的信号投递和上游 request 都在虚拟线程上执行，业务回调阻塞不会占用 IO 线程
+     */
+    static final Executor STREAM_EXECUTOR = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("matrix-stream-", 0).factory());
+
+    private static final Object COMPLETE = new Object();
+
+    private final Executor creditExecutor;
+    private final LongConsumer creditSender;
+    private final Runnable cancelHandler;
+    private final Queue<Object> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicLong pendingCredit = new AtomicLong();
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private volatile Flow.Subscriber<? super Object> subscriber;
+    private boolean done;
+
+    /**
+     * @param creditExecutor 发送 CREDIT 帧的执行器（通常为 channel 的 EventLoop），用于合并同一 tick 内的 request
+     * @param creditSender   向对端发送 CREDIT 帧
+     * @param cancelHandler  订阅者取消时通知对端停止发送
+     */
+    public InboundStream(Executor creditExecutor, LongConsumer creditSender, Runnable cancelHandler) {
+        this.creditExecutor = creditExecutor;
+        this.creditSender = creditSender;
+        this.cancelHandler = cancelHandler;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Object> subscriber) {
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(NoopSubscription.INSTANCE);
+            subscriber.onError(new IllegalStateException("Stream supports only one subscriber"));
+            return;
+        }
+        // onSubscribe 返回后才开始投递，保证 onNext 不会与 onSubscribe 并发
+        subscriber.onSubscribe(this);
+        this.subscriber = subscriber;
+        drain();
+    }
+
+    @Override
+    public void request(long n) {
+        if (cancelled.get()) {
+            return;
+        }
+        if (n <= 0) {
+            // 规范要求以 onError 通知非法的 request，同时取消对端发送
+            if (cancelled.compareAndSet(false, true)) {
+                cancelHandler.run();
+                queue.clear();
+                queue.offer(new Failure(new IllegalArgumentException("Requested items must be positive: " + n)));
+                drain();
+            }
+            return;
+        }
+        // 只有从 0 开始累加的一方负责调度发送，其余 request 合并进同一个 CREDIT 帧
+        if (pendingCredit.getAndAccumulate(n, InboundStream::addCredit) == 0) {
+            creditExecutor.execute(() -> {
+                long credit = pendingCredit.getAndSet(0);
+                if (credit > 0 && !cancelled.get()) {
+                    creditSender.accept(credit);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void cancel() {
+        if (cancelled.compareAndSet(false, true)) {
+            cancelHandler.run();
+            queue.clear();
+        }
+    }
+
+    /**
+     * 对端发来一个元素
+     */
+    public void onData(Object item) {
+        enqueue(item);
+    }
+
+    /**
+     * 对端正常结束
+     */
+    public void onComplete() {
+        enqueue(COMPLETE);
+    }
+
+    /**
+     * 对端异常结束或连接断开
+     */
+    public void onError(Throwable error) {
+        enqueue(new Failure(error));
+    }
+
+    private void enqueue(Object signal) {
+        if (signal == null || cancelled.get()) {
+            return;
+        }
+        queue.offer(signal);
+        drain();
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() == 0) {
+            STREAM_EXECUTOR.execute(this::drainLoop);
+        }
+    }
+
+    private void drainLoop() {
+        int missed = 1;
+        do {
+            Flow.Subscriber<? super Object> target = subscriber;
+            if (target != null) {
+                Object signal;
+                while (!done && (signal = queue.poll()) != null) {
+                    deliver(target, signal);
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void deliver(Flow.Subscriber<? super Object> target, Object signal) {
+        if (signal == COMPLETE) {
+            done = true;
+            if (!cancelled.get()) {
+                target.onComplete();
+            }
+        } else if (signal instanceof Failure failure) {
+            done = true;
+            target.onError(failure.error());
+        } else if (!cancelled.get()) {
+            try {
+                target.onNext(signal);
+            } catch (Throwable t) {
+                // 订阅者违反规范抛出异常，视为取消
+                done = true;
+                cancel();
+                System.err.println("[Netty] Stream subscriber failed in onNext: " + t.getMessage());
+            }
+        }
+    }
+
+    static long addCredit(long current, long n) {
+        long sum = current + n;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    private record Failure(Throwable error) {
+    }
+
+    private enum NoopSubscription implements Flow.Subscription {
+        INSTANCE;
+
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package io.homeey.matrix.rpc.transport.netty.stream;
+
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 发送方向的流：订阅本地 Publisher，把元素写给对端
+ * <p>
+ * 只有收到对端授予的 credit 才向上游 {@code request}，在途元素数永远不超过对端愿意缓冲的数量；
+ * 上游尚未完成订阅时收到的 credit 先累积，订阅完成后一次性请求。
+ * 对上游的 request / cancel 在虚拟线程上串行执行，同步发出元素的 Publisher 不会占用 IO 线程
+ */
+public final class OutboundStream implements Flow.Subscriber<Object> {
+
+    /**
+     * 元素与结束信号的写出目标
+     */
+    public interface Sink {
+        void next(Object item);
+
+        void complete();
+
+        void error(Throwable error);
+    }
+
+    private final Sink sink;
+    private final AtomicLong pendingCredit = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicBoolean done = new AtomicBoolean();
+    private volatile Flow.Subscription subscription;
+    private volatile boolean cancelled;
+    private boolean subscriptionCancelled;
+
+    public OutboundStream(Sink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * 对端授予 credit 个元素的发送额度
+     */
+    public void addCredit(long credit) {
+        if (credit <= 0 || cancelled) {
+            return;
+        }
+        pendingCredit.getAndAccumulate(credit, InboundStream::addCredit);
+        drain();
+    }
+
+    /**
+     * 对端取消或连接断开：停止上游发送，之后的信号全部丢弃
+     */
+    public void cancel() {
+        cancelled = true;
+        done.set(true);
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (this.subscription != null) {
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        drain();
+    }
+
+    @Override
+    public void onNext(Object item) {
+        if (done.get()) {
+            return;
+        }
+        if (item == null) {
+            cancel();
+            sink.error(new NullPointerException("Stream item must not be null"));
+            return;
+        }
+        sink.next(item);
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        if (done.compareAndSet(false, true)) {
+            sink.error(error);
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        if (done.compareAndSet(false, true)) {
+            sink.complete();
+        }
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() == 0) {
+            InboundStream.STREAM_EXECUTOR.execute(this::drainLoop);
+        }
+    }
+
+    private void drainLoop() {
+        int missed = 1;
+        do {
+            Flow.Subscription target = subscription;
+            if (target != null && !subscriptionCancelled) {
+                if (cancelled) {
+                    subscriptionCancelled = true;
+                    target.cancel();
+                } else {
+                    long credit = pendingCredit.getAndSet(0);
+                    if (credit > 0) {
+                        target.request(credit);
+                    }
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+}
@@ -0,0 +1,104 @@
+package io.homeey.matrix.rpc.transport.shm;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 一条共享内存连接：一个内存映射文件中的两个环形缓冲区，分别承载请求和响应
+ * <p>
+ * 文件布局：[magic 4 字节][version 4 字节][capacity 4 字节][填充至 64][请求环][响应环]。
+ * 文件由消费端创建并初始化，服务端通过握手得知路径后映射同一文件
+ */
+final class ShmChannel implements Closeable {
+
+    private static final int MAGIC = 0x4D53484D; // "MSHM"
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 64;
+
+    private final Path path;
+    private final FileChannel file;
+    private final ShmRing requests;
+    private final ShmRing responses;
+
+    private ShmChannel(Path path, FileChannel file, MappedByteBuffer buffer, int capacity) {
+        this.path = path;
+        this.file = file;
+        int ringSize = ShmRing.size(capacity);
+        this.requests = new ShmRing(buffer.slice(FILE_HEADER_SIZE, ringSize), capacity);
+        this.responses = new ShmRing(buffer.slice(FILE_HEADER_SIZE + ringSize, ringSize), capacity);
+    }
+
+    /**
+     * 消费端在 dir 下创建连接文件
+     */
+    static ShmChannel create(Path dir, int capacity) throws IOException {
+        Path path = Files.createTempFile(dir, "matrix-shm-", ".ring");
+        FileChannel file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = FILE_HEADER_SIZE + 2L * ShmRing.size(capacity);
+            MappedByteBuffer buffer = file.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, capacity);
+            // magic 最后写入，服务端看到 magic 即说明头部已完整
+            buffer.putInt(0, MAGIC);
+            return new ShmChannel(path, file, buffer, capacity);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+
+    /**
+     * 服务端映射消费端创建的连接文件
+     */
+    static ShmChannel open(Path path) throws IOException {
+        FileChannel file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer header = file.map(FileChannel.MapMode.READ_ONLY, 0, FILE_HEADER_SIZE);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException("Not a matrix shm ring file: " + path);
+            }
+            int capacity = header.getInt(8);
+            long size = FILE_HEADER_SIZE + 2L * ShmRing.size(capacity);
+            if (file.size() < size) {
+                throw new IOException("Truncated shm ring file: " + path);
+            }
+            return new ShmChannel(path, file, file.map(FileChannel.MapMode.READ_WRITE, 0, size), capacity);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    Path path() {
+        return path;
+    }
+
+    /**
+     * 消费端写、服务端读
+     */
+    ShmRing requests() {
+        return requests;
+    }
+
+    /**
+     * 服务端写、消费端读
+     */
+    ShmRing responses() {
+        return responses;
+    }
+
+    /**
+     * 关闭文件句柄；映射由 GC 回收时解除，调用方需保证关闭后不再访问环形缓冲区
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,158 @@
+package io.homeey.matrix.rpc.transport.shm;
+
+import io.homeey.matrix.rpc.common.RpcException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * 共享内存连接的一端：一个环形缓冲区只读、另一个只写
+ * <p>
+ * 读取由专属的平台线程按 {@link SpinThenParkIdler} 轮询；写入可能来自多个业务线程，
+ * 通过锁保证环形缓冲区只有一个生产者，缓冲区满时同样按忙等再 park 的方式等待对端消费。
+ * 握手用的 domain socket 在连接期间保持打开，只用于感知对端进程退出：读到 EOF 即关闭连接
+ */
+final class ShmEndpoint implements Closeable {
+
+    /**
+     * 写入不设截止时间
+     */
+    static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private static final int POLL_LIMIT = 64;
+
+    private final String name;
+    private final ShmChannel channel;
+    private final ShmRing inbound;
+    private final ShmRing outbound;
+    private final SocketChannel socket;
+    private final SpinThenParkIdler idler;
+    private final BiConsumer<ShmEndpoint, ByteBuffer> handler;
+    private final Consumer<ShmEndpoint> closeHandler;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * @param handler      处理一条入站消息，缓冲区只在回调期间有效
+     * @param closeHandler 连接关闭（主动关闭或对端退出）时回调一次
+     */
+    ShmEndpoint(String name, ShmChannel channel, ShmRing inbound, ShmRing outbound, SocketChannel socket,
+                SpinThenParkIdler idler, BiConsumer<ShmEndpoint, ByteBuffer> handler,
+                Consumer<ShmEndpoint> closeHandler) {
+        this.name = name;
+        this.channel = channel;
+        this.inbound = inbound;
+        this.outbound = outbound;
+        this.socket = socket;
+        this.idler = idler;
+        this.handler = handler;
+        this.closeHandler = closeHandler;
+    }
+
+    void start() {
+        Thread reader = new Thread(this::readLoop, name + "-reader");
+        reader.setDaemon(true);
+        reader.start();
+        Thread.ofVirtual().name(name + "-watchdog").start(this::watchPeer);
+    }
+
+    int maxMessageLength() {
+        return outbound.maxMessageLength();
+    }
+
+    boolean isOpen() {
+        return !closed.get();
+    }
+
+    /**
+     * 写出一条消息，缓冲区满时等待对端消费
+     *
+     * @param deadlineNanos 等待截止的 {@link System#nanoTime()}，超过后放弃写入；
+     *                      {@link #NO_DEADLINE} 表示一直等到写入成功或连接关闭
+     */
+    void write(byte[] message, long deadlineNanos) {
+        if (message.length > outbound.maxMessageLength()) {
+            throw new RpcException("Message size " + message.length + " exceeds shm ring limit "
+                    + outbound.maxMessageLength());
+        }
+        writeLock.lock();
+        try {
+            int attempt = 0;
+            while (!outbound.offer(message)) {
+                if (closed.get()) {
+                    throw new RpcException("Shm connection is closed: " + channel.path());
+                }
+                if (deadlineNanos != NO_DEADLINE && System.nanoTime() - deadlineNanos > 0) {
+                    throw new RpcException(RpcException.CLIENT_OVERLOADED,
+                            "Shm ring is full, peer is not consuming: " + channel.path());
+                }
+                attempt = idler.idle(attempt);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void readLoop() {
+        int attempt = 0;
+        while (!closed.get()) {
+            int read;
+            try {
+                read = inbound.poll(this::dispatch, POLL_LIMIT);
+            } catch (RuntimeException e) {
+                System.err.println("[Shm] Failed to read ring " + channel.path() + ": " + e.getMessage());
+                close();
+                return;
+            }
+            if (read > 0) {
+                attempt = 0;
+            } else {
+                attempt = idler.idle(attempt);
+            }
+        }
+    }
+
+    private void dispatch(ByteBuffer message) {
+        try {
+            handler.accept(this, message);
+        } catch (Exception e) {
+            System.err.println("[Shm] Failed to handle message on " + channel.path() + ": " + e.getMessage());
+        }
+    }
+
+    private void watchPeer() {
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        try {
+            while (socket.read(buffer.clear()) >= 0) {
+                // 握手之后对端不再发送数据，这里只等待 EOF
+            }
+        } catch (IOException e) {
+            // 本端关闭 socket 或对端异常退出
+        }
+        close();
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // ignore
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // ignore
+        }
+        closeHandler.accept(this);
+    }
+}
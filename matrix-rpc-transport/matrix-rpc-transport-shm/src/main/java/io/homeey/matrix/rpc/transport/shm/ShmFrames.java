@@ -0,0 +1,75 @@
+package io.homeey.matrix.rpc.transport.shm;
+
+import com.google.protobuf.UnsafeByteOperations;
+import io.homeey.matrix.rpc.codec.api.Codec;
+import io.homeey.matrix.rpc.codec.protobuf.RpcProto;
+import io.homeey.matrix.rpc.common.Result;
+import io.homeey.matrix.rpc.common.RpcException;
+import io.homeey.matrix.rpc.core.Invocation;
+import io.homeey.matrix.rpc.core.SignatureCache;
+import io.homeey.matrix.rpc.core.SimpleInvocation;
+import io.homeey.matrix.rpc.spi.ExtensionLoader;
+
+/**
+ * 共享内存传输的消息编解码
+ * <p>
+ * 沿用 Netty 传输的 protobuf 消息与 Kryo 参数序列化，环形缓冲区中的一条记录即一个完整消息，无需长度前缀之外的分帧。
+ * 不支持流式调用、批量帧和大对象帧
+ */
+final class ShmFrames {
+
+    private final Codec codec = ExtensionLoader.getExtensionLoader(Codec.class).getExtension("kryo");
+    private final SignatureCache signatures = SignatureCache.forContextClassLoader();
+
+    byte[] encodeRequest(long requestId, Invocation invocation) {
+        RpcProto.RpcRequest.Builder builder = RpcProto.RpcRequest.newBuilder()
+                .setRequestId(requestId)
+                .setServiceName(invocation.getServiceName())
+                .setMethodName(invocation.methodName())
+                .putAllAttachments(invocation.getAttachments());
+        for (Class<?> parameterType : invocation.parameterTypes()) {
+            builder.addParameterTypes(parameterType.getName());
+        }
+        for (Object argument : invocation.arguments()) {
+            builder.addArguments(UnsafeByteOperations.unsafeWrap(codec.encode(argument)));
+        }
+        return builder.build().toByteArray();
+    }
+
+    Invocation decodeRequest(RpcProto.RpcRequest request) {
+        Class<?>[] parameterTypes = signatures.resolve(request.getParameterTypesList()).parameterTypes();
+        Object[] arguments = new Object[request.getArgumentsCount()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = codec.decode(request.getArguments(i).asReadOnlyByteBuffer(), parameterTypes[i]);
+        }
+        return SimpleInvocation.decoded(request.getServiceName(), request.getMethodName(),
+                parameterTypes, arguments, request.getAttachmentsMap());
+    }
+
+    byte[] encodeResponse(long requestId, Result result) {
+        RpcProto.RpcResponse.Builder builder = RpcProto.RpcResponse.newBuilder().setRequestId(requestId);
+        if (result.hasException()) {
+            if (result.getException() instanceof RpcException rpcException) {
+                builder.setStatus(rpcException.getCode());
+            }
+            builder.setException(String.valueOf(result.getException().getMessage()));
+        } else {
+            try {
+                builder.setResult(UnsafeByteOperations.unsafeWrap(codec.encode(result.getValue())));
+            } catch (Exception e) {
+                builder.setException("Serialization error: " + e.getMessage());
+            }
+        }
+        return builder.build().toByteArray();
+    }
+
+    Result decodeResponse(RpcProto.RpcResponse response) {
+        if (response.getStatus() != RpcException.UNKNOWN) {
+            return new Result(new RpcException(response.getStatus(), response.getException()));
+        }
+        if (!response.getException().isEmpty()) {
+            return new Result(new RuntimeException(response.getException()));
+        }
+        return new Result(codec.decode(response.getResult().asReadOnlyByteBuffer(), Object.class));
+    }
+}
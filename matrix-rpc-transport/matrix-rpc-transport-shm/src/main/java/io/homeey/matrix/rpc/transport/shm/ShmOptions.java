@@ -0,0 +1,78 @@
+package io.homeey.matrix.rpc.transport.shm;
+
+import io.homeey.matrix.rpc.common.URL;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 共享内存传输的参数
+ * <p>
+ * 配置示例：
+ * <pre>
+ * transport=shm                                  # 选择共享内存传输（服务端与消费端都需配置）
+ * shm.path=/var/run/matrix/echo-shm.sock          # 握手用的 Unix domain socket，默认 ${java.io.tmpdir}/matrix-shm-端口.sock
+ * shm.dir=/dev/shm                               # 环形缓冲区文件所在目录，默认存在 /dev/shm 时使用它，否则为临时目录
+ * shm.capacity=4194304                           # 单个方向环形缓冲区的字节数，向上取整为 2 的幂
+ * shm.spin=20000                                 # 空闲时忙等的轮数，超过后让出 CPU 并 park
+ * shm.park=50                                    # 每次 park 的微秒数
+ * shm.handshake.timeout=3000                      # 服务端等待消费端发送握手数据的毫秒数，超时关闭连接
+ * shm.write.timeout=3000                          # 服务端响应环满时等待消费端读取的毫秒数，超时关闭连接，不大于 0 表示一直等待
+ * </pre>
+ */
+public final class ShmOptions {
+
+    public static final String NAME = "shm";
+
+    public static final String PATH_KEY = "shm.path";
+    public static final String DIR_KEY = "shm.dir";
+    public static final String CAPACITY_KEY = "shm.capacity";
+    public static final String SPIN_KEY = "shm.spin";
+    public static final String PARK_KEY = "shm.park";
+    public static final String HANDSHAKE_TIMEOUT_KEY = "shm.handshake.timeout";
+    public static final String WRITE_TIMEOUT_KEY = "shm.write.timeout";
+
+    public static final int DEFAULT_CAPACITY = 4 * 1024 * 1024;
+    public static final int DEFAULT_SPIN = 20000;
+    public static final int DEFAULT_PARK = 50;
+    public static final int DEFAULT_HANDSHAKE_TIMEOUT = 3000;
+    public static final int DEFAULT_WRITE_TIMEOUT = 3000;
+
+    private static final int MIN_CAPACITY = 64 * 1024;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private ShmOptions() {
+    }
+
+    /**
+     * 服务端监听、消费端连接的握手 socket 路径
+     */
+    public static Path socketPath(URL url) {
+        String path = url.getParameter(PATH_KEY);
+        if (path != null && !path.isEmpty()) {
+            return Path.of(path);
+        }
+        return Path.of(System.getProperty("java.io.tmpdir"), "matrix-shm-" + url.getPort() + ".sock");
+    }
+
+    /**
+     * 环形缓冲区文件目录，优先使用内存文件系统，避免脏页回写磁盘
+     */
+    public static Path ringDirectory(URL url) {
+        String dir = url.getParameter(DIR_KEY);
+        if (dir != null && !dir.isEmpty()) {
+            return Path.of(dir);
+        }
+        Path devShm = Path.of("/dev/shm");
+        if (Files.isDirectory(devShm) && Files.isWritable(devShm)) {
+            return devShm;
+        }
+        return Path.of(System.getProperty("java.io.tmpdir"));
+    }
+
+    public static int capacity(URL url) {
+        int capacity = Math.min(MAX_CAPACITY, Math.max(MIN_CAPACITY, url.getParameter(CAPACITY_KEY, DEFAULT_CAPACITY)));
+        int highest = Integer.highestOneBit(capacity);
+        return highest == capacity ? capacity : highest << 1;
+    }
+}
@@ -0,0 +1,131 @@
+package io.homeey.matrix.rpc.transport.shm;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.Consumer;
+
+/**
+ * 单生产者 / 单消费者的环形缓冲区，位于共享内存中，两端可以在不同进程
+ * <p>
+ * 布局：[tail 8 字节][填充至 64][head 8 字节][填充至 128][数据区 capacity 字节]。
+ * tail 只由生产者写、head 只由消费者写，分处不同缓存行，避免伪共享。
+ * 每条记录为 [int length][bytes]，按 8 字节对齐；记录放不下数据区尾部时写入填充记录并从头开始，
+ * 因此单条消息不能超过 capacity 的一半。
+ * <p>
+ * 生产者写完记录后以 release 语义推进 tail，消费者以 acquire 语义读取 tail，保证看到完整的记录；
+ * head 的推进同理，生产者据此判断空间是否已被释放
+ */
+final class ShmRing {
+
+    static final int HEADER_SIZE = 128;
+
+    private static final int TAIL_OFFSET = 0;
+    private static final int HEAD_OFFSET = 64;
+    private static final int RECORD_HEADER = Integer.BYTES;
+    private static final int ALIGNMENT = 8;
+    private static final int PADDING = -1;
+
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final ByteBuffer buffer;
+    private final int capacity;
+    private final int mask;
+    // 生产者缓存的 head，只有空间看似不足时才重新读取共享的 head
+    private long cachedHead;
+
+    /**
+     * @param buffer   共享内存中从环形缓冲区头部开始的区域，长度至少为 HEADER_SIZE + capacity
+     * @param capacity 数据区字节数，必须是 2 的幂
+     */
+    ShmRing(ByteBuffer buffer, int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity must be a power of two: " + capacity);
+        }
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+    }
+
+    static int size(int capacity) {
+        return HEADER_SIZE + capacity;
+    }
+
+    int maxMessageLength() {
+        return capacity / 2 - RECORD_HEADER;
+    }
+
+    /**
+     * 写入一条消息，仅由生产者线程调用
+     *
+     * @return 空间不足时返回 false，调用方稍后重试
+     */
+    boolean offer(byte[] message) {
+        int length = message.length;
+        if (length > maxMessageLength()) {
+            throw new IllegalArgumentException("Message length " + length + " exceeds ring limit " + maxMessageLength());
+        }
+        int recordLength = align(RECORD_HEADER + length);
+        long tail = (long) LONG.get(buffer, TAIL_OFFSET);
+        int index = (int) (tail & mask);
+        int toEnd = capacity - index;
+        int required = recordLength <= toEnd ? recordLength : toEnd + recordLength;
+
+        if (tail + required - cachedHead > capacity) {
+            cachedHead = (long) LONG.getAcquire(buffer, HEAD_OFFSET);
+            if (tail + required - cachedHead > capacity) {
+                return false;
+            }
+        }
+        if (required != recordLength) {
+            INT.set(buffer, HEADER_SIZE + index, PADDING);
+            index = 0;
+        }
+        INT.set(buffer, HEADER_SIZE + index, length);
+        buffer.put(HEADER_SIZE + index + RECORD_HEADER, message, 0, length);
+        LONG.setRelease(buffer, TAIL_OFFSET, tail + required);
+        return true;
+    }
+
+    /**
+     * 读取最多 limit 条消息，仅由消费者线程调用
+     * <p>
+     * 交给 handler 的缓冲区直接指向共享内存，只在回调期间有效，回调返回后空间即可能被生产者覆盖
+     *
+     * @return 读取的消息条数，0 表示没有新消息
+     */
+    int poll(Consumer<ByteBuffer> handler, int limit) {
+        long start = (long) LONG.get(buffer, HEAD_OFFSET);
+        long tail = (long) LONG.getAcquire(buffer, TAIL_OFFSET);
+        long head = start;
+        int count = 0;
+        try {
+            while (head < tail && count < limit) {
+                int index = (int) (head & mask);
+                int length = (int) INT.get(buffer, HEADER_SIZE + index);
+                if (length == PADDING) {
+                    head += capacity - index;
+                    continue;
+                }
+                int recordLength = align(RECORD_HEADER + length);
+                try {
+                    handler.accept(buffer.slice(HEADER_SIZE + index + RECORD_HEADER, length));
+                } finally {
+                    head += recordLength;
+                    count++;
+                }
+            }
+        } finally {
+            if (head != start) {
+                LONG.setRelease(buffer, HEAD_OFFSET, head);
+            }
+        }
+        return count;
+    }
+
+    private static int align(int length) {
+        return (length + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+}
@@ -0,0 +1,239 @@
+package io.homeey.matrix.rpc.transport.shm;
+
+import io.homeey.matrix.rpc.codec.protobuf.RpcProto;
+import io.homeey.matrix.rpc.common.Result;
+import io.homeey.matrix.rpc.common.RpcException;
+import io.homeey.matrix.rpc.common.URL;
+import io.homeey.matrix.rpc.core.Invocation;
+import io.homeey.matrix.rpc.spi.Activate;
+import io.homeey.matrix.rpc.transport.api.TransportClient;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于共享内存的传输客户端，用于与提供者部署在同一台机器上的消费者（如 sidecar）
+ * <p>
+ * 连接时在 {@code shm.dir} 下创建映射文件，经握手 socket 把路径告知服务端，此后请求和响应都通过
+ * 文件中的两个单生产者 / 单消费者环形缓冲区交换，不再经过系统调用。
+ * 响应由专属线程以先忙等再 park 的方式轮询，参数见 {@link ShmOptions}。
+ * 对端退出（如提供者重启）后在后台以带抖动的指数退避重连，每次重连都创建新的映射文件并重新握手，
+ * 重连完成前的调用立即失败。
+ * 不支持流式调用；批量调用使用 {@link TransportClient} 的默认实现逐个发送
+ */
+@Activate(order = 200)
+public class ShmTransportClient implements TransportClient {
+
+    private static final long RECONNECT_BASE_DELAY_MILLIS = 100;
+    private static final long RECONNECT_MAX_DELAY_MILLIS = 10_000;
+
+    private final ShmFrames frames = new ShmFrames();
+    private final AtomicLong requestIdGenerator = new AtomicLong(0);
+    private final Map<Long, CompletableFuture<Result>> pendingRequests = new ConcurrentHashMap<>();
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    private URL url;
+    private volatile ShmEndpoint endpoint;
+
+    public ShmTransportClient() {
+    }
+
+    /**
+     * 有参构造，用于直接实例化
+     */
+    public ShmTransportClient(URL url) {
+        init(url);
+    }
+
+    @Override
+    public void init(URL url) {
+        this.url = url;
+    }
+
+    @Override
+    public synchronized void connect() throws Exception {
+        if (closed.get()) {
+            throw new IllegalStateException("Shm client is closed: " + url.getAddress());
+        }
+        if (endpoint != null && endpoint.isOpen()) {
+            return;
+        }
+        Path socketPath = ShmOptions.socketPath(url);
+        ShmChannel channel = ShmChannel.create(ShmOptions.ringDirectory(url), ShmOptions.capacity(url));
+        SocketChannel socket = null;
+        try {
+            socket = SocketChannel.open(StandardProtocolFamily.UNIX);
+            socket.connect(UnixDomainSocketAddress.of(socketPath));
+            handshake(socket, channel.path());
+        } catch (IOException | RuntimeException e) {
+            if (socket != null) {
+                socket.close();
+            }
+            channel.close();
+            Files.deleteIfExists(channel.path());
+            throw e;
+        }
+        // 服务端已映射文件，此后删除目录项不影响双方的映射
+        Files.deleteIfExists(channel.path());
+
+        ShmEndpoint connected = new ShmEndpoint("matrix-shm-client", channel, channel.responses(),
+                channel.requests(), socket, new SpinThenParkIdler(url), this::handleResponse, this::connectionLost);
+        this.endpoint = connected;
+        connected.start();
+        System.out.println("[Shm] Connected to server: " + socketPath + ", ring: " + ShmOptions.capacity(url) + " bytes");
+    }
+
+    /**
+     * 发送映射文件路径，等待服务端映射完成的确认
+     */
+    private static void handshake(SocketChannel socket, Path ringPath) throws IOException {
+        byte[] path = ringPath.toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer request = ByteBuffer.allocate(Integer.BYTES + path.length).putInt(path.length).put(path).flip();
+        while (request.hasRemaining()) {
+            socket.write(request);
+        }
+        ByteBuffer ack = ByteBuffer.allocate(1);
+        while (ack.hasRemaining()) {
+            if (socket.read(ack) < 0) {
+                throw new IOException("Shm handshake rejected by server");
+            }
+        }
+        if (ack.get(0) != ShmTransportServer.HANDSHAKE_OK) {
+            throw new IOException("Shm handshake rejected by server");
+        }
+    }
+
+    @Override
+    public CompletableFuture<Result> sendAsync(Invocation invocation, long timeoutMillis) {
+        ShmEndpoint current = this.endpoint;
+        if (current == null || !current.isOpen()) {
+            return CompletableFuture.failedFuture(new RpcException("Shm connection is not active: " + url.getAddress()));
+        }
+        long requestId = requestIdGenerator.incrementAndGet();
+        byte[] request;
+        try {
+            request = frames.encodeRequest(requestId, invocation);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(new RpcException("Failed to encode RPC request", e));
+        }
+
+        CompletableFuture<Result> future = new CompletableFuture<>();
+        pendingRequests.put(requestId, future);
+        try {
+            current.write(request, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+        } catch (RuntimeException e) {
+            pendingRequests.remove(requestId);
+            return CompletableFuture.failedFuture(e);
+        }
+        return future.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).handle((result, error) -> {
+            if (error == null) {
+                return result;
+            }
+            pendingRequests.remove(requestId);
+            if (error instanceof TimeoutException) {
+                throw new RpcException("Request timeout after " + timeoutMillis + "ms");
+            }
+            throw error instanceof RpcException rpcException ? rpcException : new RpcException(error.getMessage(), error);
+        });
+    }
+
+    private void handleResponse(ShmEndpoint source, ByteBuffer message) {
+        RpcProto.RpcResponse response;
+        try {
+            response = RpcProto.RpcResponse.parseFrom(message);
+        } catch (IOException e) {
+            System.err.println("[Shm] Failed to parse response: " + e.getMessage());
+            return;
+        }
+        CompletableFuture<Result> future = pendingRequests.remove(response.getRequestId());
+        if (future == null) {
+            return;
+        }
+        try {
+            future.complete(frames.decodeResponse(response));
+        } catch (Exception e) {
+            future.completeExceptionally(new RpcException("Failed to decode RPC response", e));
+        }
+    }
+
+    /**
+     * 连接关闭时回调：在途请求以异常结束，非主动关闭时在后台重连
+     */
+    private void connectionLost(ShmEndpoint source) {
+        failPendingRequests();
+        if (!closed.get() && source == endpoint) {
+            System.err.println("[Shm] Connection lost: " + url.getAddress());
+            scheduleReconnect(0);
+        }
+    }
+
+    /**
+     * 带抖动的指数退避：第 n 次重试等待 [d/2, d)，d = min(base * 2^n, max)，
+     * 避免提供者恢复瞬间所有消费者同时重连；连接和握手会阻塞，在虚拟线程中执行
+     */
+    private void scheduleReconnect(int attempt) {
+        Executor reconnector = CompletableFuture.delayedExecutor(reconnectDelay(attempt), TimeUnit.MILLISECONDS,
+                task -> Thread.ofVirtual().name("matrix-shm-reconnect").start(task));
+        reconnector.execute(() -> {
+            if (closed.get()) {
+                return;
+            }
+            try {
+                connect();
+                System.out.println("[Shm] Reconnected to server: " + url.getAddress());
+            } catch (Exception e) {
+                if (!closed.get()) {
+                    scheduleReconnect(attempt + 1);
+                }
+            }
+        });
+    }
+
+    private static long reconnectDelay(int attempt) {
+        long delay = RECONNECT_BASE_DELAY_MILLIS << Math.min(attempt, 16);
+        delay = Math.min(delay, RECONNECT_MAX_DELAY_MILLIS);
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private void failPendingRequests() {
+        RpcException error = new RpcException("Shm connection closed: " + url.getAddress());
+        for (Long requestId : pendingRequests.keySet()) {
+            CompletableFuture<Result> future = pendingRequests.remove(requestId);
+            if (future != null) {
+                future.completeExceptionally(error);
+            }
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        ShmEndpoint current = this.endpoint;
+        return current != null && current.isOpen();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed.set(true);
+        ShmEndpoint current = this.endpoint;
+        if (current != null) {
+            current.close();
+            this.endpoint = null;
+            System.out.println("[Shm] Client closed: " + url.getAddress());
+        }
+    }
+}
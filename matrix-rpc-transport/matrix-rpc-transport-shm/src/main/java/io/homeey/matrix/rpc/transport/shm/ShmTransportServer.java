@@ -0,0 +1,234 @@
+package io.homeey.matrix.rpc.transport.shm;
+
+import io.homeey.matrix.rpc.codec.protobuf.RpcProto;
+import io.homeey.matrix.rpc.common.Result;
+import io.homeey.matrix.rpc.common.RpcException;
+import io.homeey.matrix.rpc.common.ThreadPools;
+import io.homeey.matrix.rpc.common.URL;
+import io.homeey.matrix.rpc.core.Invocation;
+import io.homeey.matrix.rpc.spi.Activate;
+import io.homeey.matrix.rpc.transport.api.RequestHandler;
+import io.homeey.matrix.rpc.transport.api.TransportServer;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 基于共享内存的传输服务端
+ * <p>
+ * 在握手 socket（{@code shm.path}）上接受消费端连接，每个连接在各自的虚拟线程中握手，
+ * 握手数据未在 {@code shm.handshake.timeout} 内到齐时关闭连接，不会阻塞其他消费端接入。映射消费端创建的文件后，
+ * 每个连接由一个专属线程轮询请求环，请求派发到业务线程池执行，响应写回响应环。
+ * 只服务同一台机器上的消费者，不监听 TCP 端口
+ */
+@Activate(order = 200)
+public class ShmTransportServer implements TransportServer {
+
+    static final byte HANDSHAKE_OK = 1;
+
+    private static final int MAX_PATH_LENGTH = 4096;
+
+    private final ShmFrames frames = new ShmFrames();
+    private final Set<ShmEndpoint> endpoints = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private URL url;
+    private RequestHandler requestHandler;
+    private ExecutorService executor;
+    private long handshakeTimeout;
+    private long writeTimeout;
+    private ServerSocketChannel serverSocket;
+    private Path socketPath;
+
+    @Override
+    public synchronized void start(URL url, RequestHandler requestHandler) {
+        if (started.get()) {
+            throw new IllegalStateException("Server already started");
+        }
+        this.url = url;
+        this.requestHandler = requestHandler;
+        this.socketPath = ShmOptions.socketPath(url);
+        this.handshakeTimeout = Math.max(1, url.getParameter(ShmOptions.HANDSHAKE_TIMEOUT_KEY,
+                ShmOptions.DEFAULT_HANDSHAKE_TIMEOUT));
+        this.writeTimeout = url.getParameter(ShmOptions.WRITE_TIMEOUT_KEY, ShmOptions.DEFAULT_WRITE_TIMEOUT);
+        try {
+            // 上次进程异常退出遗留的 socket 文件会导致 bind 失败
+            Files.deleteIfExists(socketPath);
+            serverSocket = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            serverSocket.bind(UnixDomainSocketAddress.of(socketPath));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to start shm server on: " + socketPath, e);
+        }
+        this.executor = ThreadPools.newExecutor("matrix-shm-handler", url);
+        started.set(true);
+
+        Thread acceptor = new Thread(this::acceptLoop, "matrix-shm-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        System.out.println("[Matrix RPC] Shm server started on: " + socketPath);
+    }
+
+    private void acceptLoop() {
+        while (started.get()) {
+            SocketChannel socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (started.get()) {
+                    System.err.println("[Matrix RPC] Shm server accept failed: " + e.getMessage());
+                }
+                return;
+            }
+            Thread.ofVirtual().name("matrix-shm-handshake").start(() -> handshake(socket));
+        }
+    }
+
+    private void handshake(SocketChannel socket) {
+        // 超时后关闭 socket，阻塞中的读取随即以异常返回
+        AtomicBoolean done = new AtomicBoolean(false);
+        CompletableFuture.delayedExecutor(handshakeTimeout, TimeUnit.MILLISECONDS).execute(() -> {
+            if (done.compareAndSet(false, true)) {
+                closeQuietly(socket);
+            }
+        });
+        try {
+            accept(socket, done);
+        } catch (Exception e) {
+            System.err.println("[Matrix RPC] Shm handshake failed: " + e.getMessage());
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * 读取消费端创建的映射文件路径并映射，确认后开始轮询请求环
+     *
+     * @param done 超时与握手完成二者只有先到的一方生效
+     */
+    private void accept(SocketChannel socket, AtomicBoolean done) throws IOException {
+        ByteBuffer length = readFully(socket, ByteBuffer.allocate(Integer.BYTES));
+        int pathLength = length.getInt(0);
+        if (pathLength <= 0 || pathLength > MAX_PATH_LENGTH) {
+            throw new IOException("Invalid shm ring path length: " + pathLength);
+        }
+        ByteBuffer path = readFully(socket, ByteBuffer.allocate(pathLength));
+        if (!done.compareAndSet(false, true)) {
+            throw new IOException("Shm handshake timed out");
+        }
+        ShmChannel channel = ShmChannel.open(Path.of(new String(path.array(), StandardCharsets.UTF_8)));
+
+        ShmEndpoint endpoint = new ShmEndpoint("matrix-shm-server", channel, channel.requests(),
+                channel.responses(), socket, new SpinThenParkIdler(url), this::handleRequest, endpoints::remove);
+        endpoints.add(endpoint);
+        socket.write(ByteBuffer.wrap(new byte[]{HANDSHAKE_OK}));
+        endpoint.start();
+    }
+
+    private void handleRequest(ShmEndpoint endpoint, ByteBuffer message) {
+        RpcProto.RpcRequest request;
+        try {
+            request = RpcProto.RpcRequest.parseFrom(message);
+        } catch (IOException e) {
+            System.err.println("[Matrix RPC] Failed to parse shm request: " + e.getMessage());
+            return;
+        }
+        long requestId = request.getRequestId();
+        try {
+            executor.execute(() -> execute(endpoint, request));
+        } catch (RejectedExecutionException e) {
+            writeResponse(endpoint, requestId, new Result(new RpcException(RpcException.SERVER_OVERLOADED,
+                    "Server is overloaded, request rejected: " + requestId)));
+        }
+    }
+
+    private void execute(ShmEndpoint endpoint, RpcProto.RpcRequest request) {
+        long requestId = request.getRequestId();
+        Invocation invocation;
+        try {
+            invocation = frames.decodeRequest(request);
+        } catch (Exception e) {
+            writeResponse(endpoint, requestId, new Result(e));
+            return;
+        }
+        requestHandler.handleAsync(invocation).whenComplete((result, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                result = new Result(cause);
+            }
+            writeResponse(endpoint, requestId, result);
+        });
+    }
+
+    private void writeResponse(ShmEndpoint endpoint, long requestId, Result result) {
+        try {
+            byte[] response = frames.encodeResponse(requestId, result);
+            if (response.length > endpoint.maxMessageLength()) {
+                response = frames.encodeResponse(requestId, new Result(new RpcException(
+                        "Response size " + response.length + " exceeds shm ring limit " + endpoint.maxMessageLength())));
+            }
+            endpoint.write(response, writeTimeout > 0
+                    ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(writeTimeout) : ShmEndpoint.NO_DEADLINE);
+        } catch (RpcException e) {
+            System.err.println("[Matrix RPC] Failed to write shm response " + requestId + ": " + e.getMessage());
+            if (e.getCode() == RpcException.CLIENT_OVERLOADED) {
+                // 消费端长时间不读取响应环，关闭连接以释放被阻塞的处理线程，消费端会重连
+                endpoint.close();
+            }
+        } catch (RuntimeException e) {
+            System.err.println("[Matrix RPC] Failed to write shm response " + requestId + ": " + e.getMessage());
+        }
+    }
+
+    private static ByteBuffer readFully(SocketChannel socket, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (socket.read(buffer) < 0) {
+                throw new IOException("Shm handshake closed by peer");
+            }
+        }
+        return buffer;
+    }
+
+    private static void closeQuietly(SocketChannel socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!started.getAndSet(false)) {
+            return;
+        }
+        try {
+            serverSocket.close();
+            Files.deleteIfExists(socketPath);
+        } catch (IOException e) {
+            System.err.println("[Matrix RPC] Failed to close shm server socket: " + e.getMessage());
+        }
+        for (ShmEndpoint endpoint : endpoints) {
+            endpoint.close();
+        }
+        endpoints.clear();
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+        System.out.println("[Matrix RPC] Shm server stopped");
+    }
+}
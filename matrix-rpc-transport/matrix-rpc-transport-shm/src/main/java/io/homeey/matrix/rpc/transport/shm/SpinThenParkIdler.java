@@ -0,0 +1,47 @@
+package io.homeey.matrix.rpc.transport.shm;
+
+import io.homeey.matrix.rpc.common.URL;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 等待策略：先忙等，再让出 CPU，最后定时 park
+ * <p>
+ * 对端在另一个进程中，无法通过 unpark 唤醒，只能轮询共享内存。
+ * 消息密集时停留在忙等阶段，延迟接近内存可见性的开销；长时间空闲后退化为定时 park，避免持续占满 CPU
+ */
+final class SpinThenParkIdler {
+
+    private static final int YIELDS = 100;
+
+    private final int spins;
+    private final long parkNanos;
+
+    SpinThenParkIdler(URL url) {
+        this(Math.max(0, url.getParameter(ShmOptions.SPIN_KEY, ShmOptions.DEFAULT_SPIN)),
+                TimeUnit.MICROSECONDS.toNanos(Math.max(1, url.getParameter(ShmOptions.PARK_KEY, ShmOptions.DEFAULT_PARK))));
+    }
+
+    SpinThenParkIdler(int spins, long parkNanos) {
+        this.spins = spins;
+        this.parkNanos = parkNanos;
+    }
+
+    /**
+     * 第 attempt 次（从 0 开始）未取得进展时调用，取得进展后调用方应将 attempt 归零
+     *
+     * @return 下一次的 attempt
+     */
+    int idle(int attempt) {
+        if (attempt < spins) {
+            Thread.onSpinWait();
+        } else if (attempt < spins + YIELDS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(parkNanos);
+            return attempt;
+        }
+        return attempt + 1;
+    }
+}